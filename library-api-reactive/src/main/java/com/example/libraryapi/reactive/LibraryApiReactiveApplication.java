@@ -0,0 +1,15 @@
+package com.example.libraryapi.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+// mesma api de /api/books e /api/loans do library-api, mas no netty com handlers
+// não bloqueantes e repositories r2dbc -> poucas threads atendem muitas requisições em espera
+@SpringBootApplication
+public class LibraryApiReactiveApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(LibraryApiReactiveApplication.class, args);
+	}
+
+}
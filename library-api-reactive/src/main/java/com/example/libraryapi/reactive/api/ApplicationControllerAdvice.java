@@ -0,0 +1,33 @@
+package com.example.libraryapi.reactive.api;
+
+import com.example.libraryapi.reactive.api.exception.ApiErrors;
+import com.example.libraryapi.reactive.exception.BusinessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestControllerAdvice
+public class ApplicationControllerAdvice {
+
+    // no webflux o @Valid falha com WebExchangeBindException (no mvc eh MethodArgumentNotValidException)
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handleValidationExceptions(WebExchangeBindException exception){
+        return new ApiErrors(exception.getBindingResult());
+    }
+
+    @ExceptionHandler(BusinessException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handleBusinessException(BusinessException exception){
+        return new ApiErrors(exception);
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ApiErrors> handleResponseStatusException( ResponseStatusException ex ){
+        return new ResponseEntity<>(new ApiErrors(ex), ex.getStatus());
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.libraryapi.reactive.api.dto;
+
+import javax.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookDTO {
+
+    private Long id;
+
+    @NotEmpty(message = "title must not be empty")
+    private String title;
+
+    @NotEmpty(message = "author must not be empty")
+    private String author;
+
+    @NotEmpty(message = "isbn must not be empty")
+    private String isbn;
+
+    // só leitura -> false quando o livro tem um emprestimo em aberto
+    private Boolean available;
+}
@@ -0,0 +1,31 @@
+package com.example.libraryapi.reactive.api.dto;
+
+import java.time.LocalDate;
+import javax.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanDTO {
+
+    private Long id;
+
+    @NotEmpty
+    private String isbn;
+
+    @NotEmpty
+    private String customer;
+
+    @NotEmpty
+    private String customerEmail;
+    private BookDTO book;
+
+    // só saída (preenchidos pelo mapper, ignorados no cadastro)
+    private LocalDate loanDate;
+    private Boolean returned;
+}
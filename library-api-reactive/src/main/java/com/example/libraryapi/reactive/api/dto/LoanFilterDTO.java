@@ -0,0 +1,16 @@
+package com.example.libraryapi.reactive.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanFilterDTO {
+
+    private String isbn;
+    private String customer;
+}
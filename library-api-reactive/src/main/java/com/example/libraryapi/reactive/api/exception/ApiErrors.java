@@ -0,0 +1,31 @@
+package com.example.libraryapi.reactive.api.exception;
+
+import com.example.libraryapi.reactive.exception.BusinessException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.server.ResponseStatusException;
+
+// mesmo corpo de erro do library-api: { "allErrors": [ ... ] }
+public class ApiErrors {
+
+    List<String> allErrors;
+
+    public ApiErrors(BindingResult bindingResult) {
+        this.allErrors = new ArrayList<>();
+        bindingResult.getAllErrors().forEach( error -> this.allErrors.add(error.getDefaultMessage()) );
+    }
+
+    public ApiErrors(BusinessException exception) {
+        this.allErrors = Arrays.asList(exception.getMessage());
+    }
+
+    public ApiErrors(ResponseStatusException exception) {
+        this.allErrors = Arrays.asList(exception.getReason());
+    }
+
+    public List<String> getAllErrors() {
+        return allErrors;
+    }
+}
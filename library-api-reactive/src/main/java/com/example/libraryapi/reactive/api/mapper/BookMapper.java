@@ -0,0 +1,16 @@
+package com.example.libraryapi.reactive.api.mapper;
+
+import com.example.libraryapi.reactive.api.dto.BookDTO;
+import com.example.libraryapi.reactive.model.entity.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    @Mapping(target = "available", expression = "java( book.getActiveLoanId() == null )")
+    BookDTO toDto(Book book);
+
+    @Mapping(target = "activeLoanId", ignore = true)
+    Book toEntity(BookDTO dto);
+}
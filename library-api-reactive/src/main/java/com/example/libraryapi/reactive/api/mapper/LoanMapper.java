@@ -0,0 +1,21 @@
+package com.example.libraryapi.reactive.api.mapper;
+
+import com.example.libraryapi.reactive.api.dto.LoanDTO;
+import com.example.libraryapi.reactive.model.entity.Loan;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring", uses = BookMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface LoanMapper {
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    LoanDTO toDto(Loan loan);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "bookId", ignore = true)
+    @Mapping(target = "book", ignore = true)
+    @Mapping(target = "loanDate", ignore = true)
+    @Mapping(target = "returned", ignore = true)
+    Loan toEntity(LoanDTO dto);
+}
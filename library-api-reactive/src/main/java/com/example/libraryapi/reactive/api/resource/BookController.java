@@ -0,0 +1,94 @@
+package com.example.libraryapi.reactive.api.resource;
+
+import com.example.libraryapi.reactive.api.dto.BookDTO;
+import com.example.libraryapi.reactive.api.dto.LoanDTO;
+import com.example.libraryapi.reactive.api.mapper.BookMapper;
+import com.example.libraryapi.reactive.api.mapper.LoanMapper;
+import com.example.libraryapi.reactive.model.entity.Book;
+import com.example.libraryapi.reactive.service.BookService;
+import com.example.libraryapi.reactive.service.LoanService;
+import javax.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+// mesmas rotas e DTOs do BookController do library-api, com diferenças no contrato:
+// - listas no json do Page do spring data (content, totalElements, pageable...), não no PageDTO
+// - sem ETag: GET não responde 304 a If-None-Match e PUT não exige If-Match
+// - sem /bulk, /export e o cursor ?after=
+// -> cada handler devolve um Mono e a thread do netty fica livre enquanto o banco responde
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+public class BookController {
+
+    private final BookService service;
+    private final LoanService loanService;
+    private final BookMapper bookMapper;
+    private final LoanMapper loanMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto){
+        return service.save(bookMapper.toEntity(dto))
+                .map(bookMapper::toDto);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<BookDTO> get(@PathVariable Long id){
+        return found(id).map(bookMapper::toDto);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id){
+        return found(id).flatMap(service::delete);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<BookDTO> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto){
+        return found(id)
+                .flatMap(book -> {
+                    book.setAuthor( dto.getAuthor() );
+                    book.setTitle( dto.getTitle() );
+                    return service.update(book);
+                })
+                .map(bookMapper::toDto);
+    }
+
+    // ?title=&author=&page=&size= -> mesmo json do Page do spring data
+    @GetMapping
+    public Mono<Page<BookDTO>> find(BookDTO dto,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size){
+        return service.find(bookMapper.toEntity(dto), PageRequest.of(page, size))
+                .map(result -> result.map(bookMapper::toDto));
+    }
+
+    @GetMapping("/{id}/loans")
+    public Mono<Page<LoanDTO>> loansByBook(@PathVariable Long id,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "20") int size){
+        return found(id)
+                .flatMap(book -> loanService.getLoansByBook(book, PageRequest.of(page, size)))
+                .map(result -> result.map(loanMapper::toDto));
+    }
+
+    private Mono<Book> found(Long id) {
+        return service.getById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.libraryapi.reactive.api.resource;
+
+import com.example.libraryapi.reactive.api.dto.LoanDTO;
+import com.example.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.example.libraryapi.reactive.api.dto.ReturnedLoanDTO;
+import com.example.libraryapi.reactive.api.mapper.LoanMapper;
+import com.example.libraryapi.reactive.model.entity.Loan;
+import com.example.libraryapi.reactive.service.BookService;
+import com.example.libraryapi.reactive.service.LoanService;
+import java.time.LocalDate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+// mesmas rotas e DTOs do LoanController do library-api, com diferenças no contrato:
+// - lista no json do Page do spring data, não no PageDTO
+// - PATCH /{id} sem If-Match e sem a devolução em lote (PATCH /api/loans)
+// - sem /export e o cursor ?after=
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+public class LoanController {
+
+    private final LoanService service;
+    private final BookService bookService;
+    private final LoanMapper loanMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Long> create(@RequestBody LoanDTO dto){
+        return bookService.getBookByIsbn(dto.getIsbn())
+                .switchIfEmpty(Mono.error(() ->
+                        new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed ISBN")))
+                .flatMap(book -> {
+                    Loan entity = loanMapper.toEntity(dto);
+                    entity.setBook( book );
+                    entity.setLoanDate( LocalDate.now() );
+                    return service.save(entity);
+                })
+                .map(Loan::getId);
+    }
+
+    @PatchMapping("/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
+        return service.getById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(loan -> {
+                    loan.setReturned(dto.getReturned());
+                    return service.update(loan);
+                })
+                .then();
+    }
+
+    @GetMapping
+    public Mono<Page<LoanDTO>> find(LoanFilterDTO dto,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size){
+        return service.find(dto, PageRequest.of(page, size))
+                .map(result -> result.map(loanMapper::toDto));
+    }
+}
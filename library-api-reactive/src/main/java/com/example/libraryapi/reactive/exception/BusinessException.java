@@ -0,0 +1,7 @@
+package com.example.libraryapi.reactive.exception;
+
+public class BusinessException extends RuntimeException {
+    public BusinessException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.libraryapi.reactive.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("book")
+public class Book {
+
+    public static final String UK_ISBN = "uk_book_isbn";
+
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String author;
+
+    private String isbn;
+
+    // emprestimo em aberto do livro (null = disponivel), como no library-api
+    private Long activeLoanId;
+}
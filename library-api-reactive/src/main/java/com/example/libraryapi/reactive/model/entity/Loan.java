@@ -0,0 +1,38 @@
+package com.example.libraryapi.reactive.model.entity;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table("loan")
+public class Loan {
+
+    @Id
+    private Long id;
+
+    private String customer;
+
+    private String customerEmail;
+
+    // r2dbc não tem relacionamento -> só a chave; o livro eh preenchido
+    // pelo LoanServiceImpl quando a resposta precisa dele
+    @Column("id_book")
+    private Long bookId;
+
+    @Transient
+    private Book book;
+
+    private LocalDate loanDate;
+
+    private Boolean returned;
+}
@@ -0,0 +1,30 @@
+package com.example.libraryapi.reactive.model.repository;
+
+import com.example.libraryapi.reactive.model.entity.Book;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+// espelho do BookRepository do library-api (consultas usadas por /api/books e /api/loans)
+@Repository
+public interface BookRepository extends ReactiveCrudRepository<Book, Long>, BookRepositoryCustom {
+
+    Mono<Boolean> existsByIsbn(String isbn);
+
+    Mono<Book> findByIsbn(String isbn);
+
+    // marcador do emprestimo em aberto -> disponibilidade sem consultar os emprestimos
+    // 0 = o livro já tinha outro emprestimo em aberto (quem chegou depois perde);
+    // o mesmo loanId de novo (reenvio da reabertura) não eh conflito
+    @Modifying
+    @Query("update book set active_loan_id = :loanId "
+            + "where id = :bookId and (active_loan_id is null or active_loan_id = :loanId)")
+    Mono<Integer> markActiveLoan(@Param("bookId") Long bookId, @Param("loanId") Long loanId);
+
+    @Modifying
+    @Query("update book set active_loan_id = null where id = :bookId and active_loan_id = :loanId")
+    Mono<Integer> clearActiveLoan(@Param("bookId") Long bookId, @Param("loanId") Long loanId);
+}
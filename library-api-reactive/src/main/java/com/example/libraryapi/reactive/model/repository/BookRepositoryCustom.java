@@ -0,0 +1,12 @@
+package com.example.libraryapi.reactive.model.repository;
+
+import com.example.libraryapi.reactive.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+public interface BookRepositoryCustom {
+
+    // titulo e autor "contém" ignorando maiusculas (null = sem filtro), com o total da pagina
+    Mono<Page<Book>> find(String title, String author, Pageable pageable);
+}
@@ -0,0 +1,51 @@
+package com.example.libraryapi.reactive.model.repository;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+
+import com.example.libraryapi.reactive.model.entity.Book;
+import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Mono;
+
+// filtro montado só com os campos informados -> a pagina e o count vão em paralelo
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    private final R2dbcEntityTemplate template;
+
+    public BookRepositoryImpl(R2dbcEntityTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Mono<Page<Book>> find(String title, String author, Pageable pageable) {
+        Criteria criteria = Criteria.empty();
+        if (title != null) {
+            criteria = criteria.and(where("title").like(contains(title)).ignoreCase(true));
+        }
+        if (author != null) {
+            criteria = criteria.and(where("author").like(contains(author)).ignoreCase(true));
+        }
+
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");
+        Mono<List<Book>> content = template.select(Book.class)
+                .matching(Query.query(criteria).sort(sort).with(pageable))
+                .all()
+                .collectList();
+        Mono<Long> total = template.select(Book.class)
+                .matching(Query.query(criteria))
+                .count();
+
+        return Mono.zip(content, total)
+                .map(result -> new PageImpl<>(result.getT1(), pageable, result.getT2()));
+    }
+
+    private static String contains(String value) {
+        return "%" + value + "%";
+    }
+}
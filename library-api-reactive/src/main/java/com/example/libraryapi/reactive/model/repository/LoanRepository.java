@@ -0,0 +1,35 @@
+package com.example.libraryapi.reactive.model.repository;
+
+import com.example.libraryapi.reactive.model.entity.Loan;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// espelho do LoanRepository do library-api
+// -> sem join fetch: os livros da pagina vêm depois num único findAllById
+@Repository
+public interface LoanRepository extends ReactiveCrudRepository<Loan, Long> {
+
+    @Query("select l.* from loan l join book b on b.id = l.id_book"
+            + " where b.isbn = :isbn or l.customer = :customer"
+            + " order by l.id limit :limit offset :offset")
+    Flux<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn,
+                                        @Param("customer") String customer,
+                                        @Param("limit") int limit,
+                                        @Param("offset") long offset);
+
+    @Query("select count(*) from loan l join book b on b.id = l.id_book"
+            + " where b.isbn = :isbn or l.customer = :customer")
+    Mono<Long> countByBookIsbnOrCustomer(@Param("isbn") String isbn,
+                                         @Param("customer") String customer);
+
+    @Query("select * from loan where id_book = :bookId order by id limit :limit offset :offset")
+    Flux<Loan> findByBookId(@Param("bookId") Long bookId,
+                            @Param("limit") int limit,
+                            @Param("offset") long offset);
+
+    Mono<Long> countByBookId(Long bookId);
+}
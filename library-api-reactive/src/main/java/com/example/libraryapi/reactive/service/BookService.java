@@ -0,0 +1,21 @@
+package com.example.libraryapi.reactive.service;
+
+import com.example.libraryapi.reactive.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+public interface BookService {
+
+    Mono<Book> save(Book book);
+
+    Mono<Book> getById(Long id);
+
+    Mono<Void> delete(Book book);
+
+    Mono<Book> update(Book book);
+
+    Mono<Page<Book>> find(Book filter, Pageable pageable);
+
+    Mono<Book> getBookByIsbn(String isbn);
+}
@@ -0,0 +1,21 @@
+package com.example.libraryapi.reactive.service;
+
+import com.example.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.example.libraryapi.reactive.model.entity.Book;
+import com.example.libraryapi.reactive.model.entity.Loan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+public interface LoanService {
+
+    Mono<Loan> save(Loan loan);
+
+    Mono<Loan> getById(Long id);
+
+    Mono<Loan> update(Loan loan);
+
+    Mono<Page<Loan>> find(LoanFilterDTO filter, Pageable pageable);
+
+    Mono<Page<Loan>> getLoansByBook(Book book, Pageable pageable);
+}
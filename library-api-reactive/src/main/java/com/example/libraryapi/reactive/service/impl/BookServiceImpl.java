@@ -0,0 +1,65 @@
+package com.example.libraryapi.reactive.service.impl;
+
+import com.example.libraryapi.reactive.exception.BusinessException;
+import com.example.libraryapi.reactive.model.entity.Book;
+import com.example.libraryapi.reactive.model.repository.BookRepository;
+import com.example.libraryapi.reactive.service.BookService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+public class BookServiceImpl implements BookService {
+
+    private final BookRepository repository;
+
+    public BookServiceImpl(BookRepository repository) {
+        this.repository = repository;
+    }
+
+    // um único insert -> isbn repetido volta como violação da constraint única
+    @Override
+    public Mono<Book> save(Book book) {
+        return repository.save(book)
+                .onErrorMap(DataIntegrityViolationException.class, e -> isIsbnViolation(e)
+                        ? new BusinessException("Isbn já cadastrado.")
+                        : e);
+    }
+
+    private boolean isIsbnViolation(DataIntegrityViolationException e) {
+        return e.getMessage() != null && e.getMessage().toLowerCase().contains(Book.UK_ISBN);
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Void> delete(Book book) {
+        if (book == null || book.getId() == null){
+            return Mono.error(new IllegalArgumentException("Book id cannot be null"));
+        }
+        return repository.delete(book);
+    }
+
+    @Override
+    public Mono<Book> update(Book book) {
+        if (book == null || book.getId() == null){
+            return Mono.error(new IllegalArgumentException("Book id cannot be null"));
+        }
+        return repository.save(book);
+    }
+
+    @Override
+    public Mono<Page<Book>> find(Book filter, Pageable pageable) {
+        return repository.find(filter.getTitle(), filter.getAuthor(), pageable);
+    }
+
+    @Override
+    public Mono<Book> getBookByIsbn(String isbn) {
+        return repository.findByIsbn(isbn);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.libraryapi.reactive.service.impl;
+
+import com.example.libraryapi.reactive.api.dto.LoanFilterDTO;
+import com.example.libraryapi.reactive.exception.BusinessException;
+import com.example.libraryapi.reactive.model.entity.Book;
+import com.example.libraryapi.reactive.model.entity.Loan;
+import com.example.libraryapi.reactive.model.repository.BookRepository;
+import com.example.libraryapi.reactive.model.repository.LoanRepository;
+import com.example.libraryapi.reactive.service.LoanService;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+public class LoanServiceImpl implements LoanService {
+
+    private final LoanRepository repository;
+    private final BookRepository bookRepository;
+
+    public LoanServiceImpl(LoanRepository repository, BookRepository bookRepository) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+    }
+
+    // o livro já vem preenchido (buscado pelo isbn no controller)
+    // -> a leitura do marcador só poupa o insert; quem decide é o update condicional,
+    //    e o erro desfaz o insert de quem perdeu
+    @Override
+    @Transactional
+    public Mono<Loan> save(Loan loan) {
+        Book book = loan.getBook();
+        if (book.getActiveLoanId() != null) {
+            return Mono.error(new BusinessException("Book already loaned."));
+        }
+
+        loan.setBookId(book.getId());
+        return repository.save(loan)
+                .flatMap(saved -> markActiveLoan(saved));
+    }
+
+    @Override
+    public Mono<Loan> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    // devolução (returned = true) libera o livro, senão o emprestimo volta a ser o ativo
+    @Override
+    @Transactional
+    public Mono<Loan> update(Loan loan) {
+        return repository.save(loan)
+                .flatMap(updated -> Boolean.TRUE.equals(updated.getReturned())
+                        ? bookRepository.clearActiveLoan(updated.getBookId(), updated.getId()).thenReturn(updated)
+                        : markActiveLoan(updated));
+    }
+
+    private Mono<Loan> markActiveLoan(Loan loan) {
+        return bookRepository.markActiveLoan(loan.getBookId(), loan.getId())
+                .flatMap(updated -> updated == 0
+                        ? Mono.<Loan>error(new BusinessException("Book already loaned."))
+                        : Mono.just(loan));
+    }
+
+    @Override
+    public Mono<Page<Loan>> find(LoanFilterDTO filter, Pageable pageable) {
+        Flux<Loan> content = repository.findByBookIsbnOrCustomer(
+                filter.getIsbn(), filter.getCustomer(), pageable.getPageSize(), pageable.getOffset());
+        Mono<Long> total = repository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer());
+
+        return page(content, total, pageable);
+    }
+
+    @Override
+    public Mono<Page<Loan>> getLoansByBook(Book book, Pageable pageable) {
+        Flux<Loan> content = repository.findByBookId(book.getId(), pageable.getPageSize(), pageable.getOffset());
+        Mono<Long> total = repository.countByBookId(book.getId());
+
+        return page(content, total, pageable);
+    }
+
+    private Mono<Page<Loan>> page(Flux<Loan> content, Mono<Long> total, Pageable pageable) {
+        return Mono.zip(content.collectList().flatMap(this::withBooks), total)
+                .map(result -> new PageImpl<>(result.getT1(), pageable, result.getT2()));
+    }
+
+    // os livros da pagina numa query só (no library-api isso eh o join fetch)
+    private Mono<List<Loan>> withBooks(List<Loan> loans) {
+        Set<Long> bookIds = loans.stream().map(Loan::getBookId).collect(Collectors.toSet());
+        if (bookIds.isEmpty()) {
+            return Mono.just(loans);
+        }
+        return bookRepository.findAllById(bookIds)
+                .collectMap(Book::getId, Function.identity())
+                .map(books -> attach(loans, books));
+    }
+
+    private static List<Loan> attach(List<Loan> loans, Map<Long, Book> books) {
+        loans.forEach(loan -> loan.setBook(books.get(loan.getBookId())));
+        return loans;
+    }
+}
@@ -0,0 +1,23 @@
+-- mesmas tabelas, colunas e indices que o hibernate gera para o library-api
+create table if not exists book (
+    id bigint auto_increment primary key,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    active_loan_id bigint,
+    constraint uk_book_isbn unique (isbn)
+);
+
+create index if not exists idx_book_title_id on book (title, id);
+
+create table if not exists loan (
+    id bigint auto_increment primary key,
+    customer varchar(255),
+    customer_email varchar(255),
+    id_book bigint references book (id),
+    loan_date date,
+    returned boolean
+);
+
+create index if not exists idx_loan_id_book on loan (id_book);
+create index if not exists idx_loan_customer on loan (customer);
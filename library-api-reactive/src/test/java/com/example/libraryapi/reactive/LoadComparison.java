@@ -0,0 +1,125 @@
+package com.example.libraryapi.reactive;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// carga igual nas duas versões da api (servlet e reactive), uma depois da outra, com as duas no ar:
+//   java -cp target/test-classes com.example.libraryapi.reactive.LoadComparison \
+//        http://localhost:8080 http://localhost:8082 [concorrencia=500] [segundos=20]
+// popula cada uma com livros e emprestimos e depois mantém N requisições em andamento
+// (GET /api/loans por isbn e por cliente -> join + count no banco nas duas), medindo vazão e latência
+public class LoadComparison {
+
+    private static final int BOOKS = 2_000;
+    private static final int CUSTOMERS = 100;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        String servlet = args.length > 0 ? args[0] : "http://localhost:8080";
+        String reactive = args.length > 1 ? args[1] : "http://localhost:8082";
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        LoadComparison load = new LoadComparison();
+        for (String baseUrl : new String[]{servlet, reactive}) {
+            load.seed(baseUrl);
+            load.run(baseUrl, concurrency, 5);   // aquecimento
+            Result result = load.run(baseUrl, concurrency, seconds);
+            System.out.printf("%-24s concurrency=%d  %8.0f req/s  p50=%6.1fms  p99=%7.1fms  errors=%d%n",
+                    baseUrl, concurrency, result.throughput(), result.percentile(50),
+                    result.percentile(99), result.errors);
+        }
+    }
+
+    private void seed(String baseUrl) throws Exception {
+        for (int i = 0; i < BOOKS; i++) {
+            send(post(baseUrl + "/api/books", String.format(
+                    "{\"title\":\"titulo %d\",\"author\":\"autor %d\",\"isbn\":\"load-%d\"}", i, i % 50, i)));
+            send(post(baseUrl + "/api/loans", String.format(
+                    "{\"isbn\":\"load-%d\",\"customer\":\"cliente %d\",\"customerEmail\":\"c%d@email.com\"}",
+                    i, i % CUSTOMERS, i % CUSTOMERS)));
+        }
+    }
+
+    private Result run(String baseUrl, int concurrency, int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong sequence = new AtomicLong();
+
+        long start = System.nanoTime();
+        long end = start + Duration.ofSeconds(seconds).toNanos();
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long n = sequence.incrementAndGet();
+            String uri = n % 2 == 0
+                    ? baseUrl + "/api/loans?isbn=load-" + (n % BOOKS) + "&size=10"
+                    : baseUrl + "/api/loans?customer=cliente%20" + (n % CUSTOMERS) + "&size=10";
+
+            long sent = System.nanoTime();
+            client.sendAsync(HttpRequest.newBuilder(URI.create(uri)).GET().build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else {
+                            latencies.add(System.nanoTime() - sent);
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(concurrency);
+        return new Result(latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private void send(HttpRequest request) throws Exception {
+        CompletableFuture<HttpResponse<Void>> response =
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        response.get();
+    }
+
+    private static final class Result {
+        private final List<Long> latencies;
+        private final int errors;
+        private final long elapsedNanos;
+
+        private Result(List<Long> latencies, int errors, long elapsedNanos) {
+            this.latencies = new ArrayList<>(latencies);
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            Collections.sort(this.latencies);
+        }
+
+        private double throughput() {
+            return latencies.size() / (elapsedNanos / 1e9);
+        }
+
+        private double percentile(int p) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * latencies.size()) - 1;
+            return latencies.get(Math.max(index, 0)) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.libraryapi.reactive.api.resource;
+
+import com.example.libraryapi.reactive.api.dto.BookDTO;
+import com.example.libraryapi.reactive.model.repository.BookRepository;
+import com.example.libraryapi.reactive.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+// sobe a aplicação inteira (netty + h2 via r2dbc) e fala com ela por http
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+class BookControllerTest {
+
+    static final String BOOK_API = "/api/books";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @BeforeEach
+    void setUp(){
+        loanRepository.deleteAll().then(bookRepository.deleteAll()).block();
+    }
+
+    @Test
+    @DisplayName("deve criar um livro com sucesso")
+    void createBookTest(){
+        client.post().uri(BOOK_API)
+                .bodyValue(book("123"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("id").isNotEmpty()
+                .jsonPath("title").isEqualTo("As aventuras")
+                .jsonPath("available").isEqualTo(true);
+    }
+
+    @Test
+    @DisplayName("deve lançar erro de validação quando não houver dados suficientes")
+    void createInvalidBookTest(){
+        client.post().uri(BOOK_API)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("allErrors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("deve lançar erro ao tentar cadastrar um livro com isbn já utilizado")
+    void createBookWithDuplicatedIsbnTest(){
+        create(book("123"));
+
+        client.post().uri(BOOK_API)
+                .bodyValue(book("123"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("allErrors[0]").isEqualTo("Isbn já cadastrado.");
+    }
+
+    @Test
+    @DisplayName("deve obter, atualizar e deletar um livro")
+    void getUpdateDeleteBookTest(){
+        BookDTO created = create(book("123"));
+
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("isbn").isEqualTo("123");
+
+        client.put().uri(BOOK_API + "/" + created.getId())
+                .bodyValue(BookDTO.builder().title("novo titulo").author("novo autor").isbn("999").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("title").isEqualTo("novo titulo")
+                .jsonPath("isbn").isEqualTo("123");
+
+        client.delete().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.get().uri(BOOK_API + "/" + created.getId())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("deve filtrar livros por titulo e autor, paginado")
+    void findBooksTest(){
+        create(book("1"));
+        create(BookDTO.builder().title("Outro livro").author("Fulano").isbn("2").build());
+        create(BookDTO.builder().title("Mais aventuras").author("Ciclano").isbn("3").build());
+
+        client.get().uri(BOOK_API + "?title=AVENTURA&author=fulano&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("content[0].isbn").isEqualTo("1")
+                .jsonPath("totalElements").isEqualTo(1)
+                .jsonPath("pageable.pageSize").isEqualTo(10);
+    }
+
+    private BookDTO create(BookDTO dto) {
+        return client.post().uri(BOOK_API)
+                .bodyValue(dto)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(BookDTO.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    static BookDTO book(String isbn) {
+        return BookDTO.builder().title("As aventuras").author("Fulano").isbn(isbn).build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.libraryapi.reactive.api.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.reactive.api.dto.BookDTO;
+import com.example.libraryapi.reactive.api.dto.LoanDTO;
+import com.example.libraryapi.reactive.api.dto.ReturnedLoanDTO;
+import com.example.libraryapi.reactive.model.repository.BookRepository;
+import com.example.libraryapi.reactive.model.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+class LoanControllerTest {
+
+    static final String LOAN_API = "/api/loans";
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    BookDTO book;
+
+    @BeforeEach
+    void setUp(){
+        loanRepository.deleteAll().then(bookRepository.deleteAll()).block();
+
+        book = client.post().uri(BookControllerTest.BOOK_API)
+                .bodyValue(BookControllerTest.book("123"))
+                .exchange()
+                .expectBody(BookDTO.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    @DisplayName("deve emprestar, recusar o segundo emprestimo e liberar o livro na devolução")
+    void loanAndReturnTest(){
+        Long loanId = client.post().uri(LOAN_API)
+                .bodyValue(loan("123"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Long.class)
+                .returnResult()
+                .getResponseBody();
+
+        client.post().uri(LOAN_API)
+                .bodyValue(loan("123"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("allErrors[0]").isEqualTo("Book already loaned.");
+
+        client.get().uri(BookControllerTest.BOOK_API + "/" + book.getId())
+                .exchange()
+                .expectBody().jsonPath("available").isEqualTo(false);
+
+        client.patch().uri(LOAN_API + "/" + loanId)
+                .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isOk();
+
+        client.get().uri(BookControllerTest.BOOK_API + "/" + book.getId())
+                .exchange()
+                .expectBody().jsonPath("available").isEqualTo(true);
+    }
+
+    @Test
+    @DisplayName("deve recusar reabrir o emprestimo quando o livro já foi emprestado de novo")
+    void reopenLoanedBookTest(){
+        Long first = client.post().uri(LOAN_API).bodyValue(loan("123")).exchange()
+                .expectBody(Long.class).returnResult().getResponseBody();
+        client.patch().uri(LOAN_API + "/" + first)
+                .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+                .exchange()
+                .expectStatus().isOk();
+        Long second = client.post().uri(LOAN_API).bodyValue(loan("123")).exchange()
+                .expectBody(Long.class).returnResult().getResponseBody();
+
+        client.patch().uri(LOAN_API + "/" + first)
+                .bodyValue(ReturnedLoanDTO.builder().returned(false).build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("allErrors[0]").isEqualTo("Book already loaned.");
+
+        // o rollback mantém o primeiro devolvido e o livro com o segundo
+        assertThat(loanRepository.findById(first).block().getReturned()).isTrue();
+        assertThat(bookRepository.findById(book.getId()).block().getActiveLoanId()).isEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("deve aceitar o reenvio da reabertura de um emprestimo em aberto")
+    void reopenOpenLoanAgainTest(){
+        Long id = client.post().uri(LOAN_API).bodyValue(loan("123")).exchange()
+                .expectBody(Long.class).returnResult().getResponseBody();
+
+        client.patch().uri(LOAN_API + "/" + id)
+                .bodyValue(ReturnedLoanDTO.builder().returned(false).build())
+                .exchange()
+                .expectStatus().isOk();
+
+        assertThat(loanRepository.findById(id).block().getReturned()).isFalse();
+        assertThat(bookRepository.findById(book.getId()).block().getActiveLoanId()).isEqualTo(id);
+    }
+
+    @Test
+    @DisplayName("deve retornar erro ao emprestar livro inexistente")
+    void invalidIsbnTest(){
+        client.post().uri(LOAN_API)
+                .bodyValue(loan("999"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("allErrors[0]").isEqualTo("Book not found for passed ISBN");
+    }
+
+    @Test
+    @DisplayName("deve filtrar emprestimos por isbn ou cliente com o livro aninhado")
+    void findLoansTest(){
+        client.post().uri(LOAN_API).bodyValue(loan("123")).exchange().expectStatus().isCreated();
+
+        client.get().uri(LOAN_API + "?customer=Fulano&isbn=000&page=0&size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("content[0].isbn").isEqualTo("123")
+                .jsonPath("content[0].book.title").isEqualTo("As aventuras")
+                .jsonPath("totalElements").isEqualTo(1);
+
+        client.get().uri(BookControllerTest.BOOK_API + "/" + book.getId() + "/loans")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("content[0].customer").isEqualTo("Fulano");
+    }
+
+    private static LoanDTO loan(String isbn) {
+        return LoanDTO.builder().isbn(isbn).customer("Fulano").customerEmail("fulano@email.com").build();
+    }
+}
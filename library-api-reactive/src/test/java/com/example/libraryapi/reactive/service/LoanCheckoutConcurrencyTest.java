@@ -0,0 +1,73 @@
+package com.example.libraryapi.reactive.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.reactive.exception.BusinessException;
+import com.example.libraryapi.reactive.model.entity.Book;
+import com.example.libraryapi.reactive.model.entity.Loan;
+import com.example.libraryapi.reactive.model.repository.BookRepository;
+import com.example.libraryapi.reactive.model.repository.LoanRepository;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// cada save roda na sua transação (r2dbc), todos com o livro lido antes de qualquer emprestimo
+// -> a checagem do marcador em memória deixa todos passarem, só o update condicional separa
+@SpringBootTest
+class LoanCheckoutConcurrencyTest {
+
+    private static final int REQUESTS = 16;
+
+    @Autowired
+    LoanService service;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @BeforeEach
+    void setUp(){
+        loanRepository.deleteAll().then(bookRepository.deleteAll()).block();
+    }
+
+    @Test
+    @DisplayName("deve emprestar o livro para um só cliente com pedidos simultaneos")
+    void concurrentCheckoutTest(){
+        Book book = bookRepository.save(Book.builder().title("Aventuras").author("Fulano").isbn("123").build()).block();
+
+        List<Object> results = Flux.range(0, REQUESTS)
+                .flatMap(i -> Mono.defer(() -> service.save(loan(book, i)))
+                        .<Object>map(Loan::getId)
+                        .onErrorResume(BusinessException.class, Mono::just)
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        List<Object> winners = Flux.fromIterable(results).filter(Long.class::isInstance).collectList().block();
+        assertThat(winners).hasSize(1);
+        assertThat(results).filteredOn(BusinessException.class::isInstance)
+                .hasSize(REQUESTS - 1)
+                .allSatisfy(error -> assertThat((BusinessException) error).hasMessage("Book already loaned."));
+        // só o insert do vencedor ficou no banco e o livro aponta para ele
+        assertThat(loanRepository.count().block()).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId()).block().getActiveLoanId()).isEqualTo(winners.get(0));
+    }
+
+    private static Loan loan(Book book, int customer) {
+        return Loan.builder()
+                .book(book)
+                .customer("cliente " + customer)
+                .loanDate(LocalDate.now())
+                .returned(false)
+                .build();
+    }
+}
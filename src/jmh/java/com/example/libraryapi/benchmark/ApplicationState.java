@@ -0,0 +1,78 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.LibraryApiApplication;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+// sobe a aplicação inteira (h2 em memória) uma vez por fork do JMH
+// e popula a base com um catálogo e um histórico de empréstimos
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    public static final int BOOKS = 1_000;
+    public static final int LOANS_PER_BOOK = 5;
+
+    public ConfigurableApplicationContext context;
+    public MockMvc mvc;
+
+    public List<Long> bookIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.boot.admin.client.enabled=false",
+                        "logging.file.name=",
+                        "logging.level.root=WARN")
+                .run();
+
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+        LoanRepository loanRepository = context.getBean(LoanRepository.class);
+
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = bookRepository.save(Book.builder()
+                    .title("titulo " + i)
+                    .author("autor " + (i % 50))
+                    .isbn("isbn-" + i)
+                    .build());
+            bookIds.add(book.getId());
+
+            for (int j = 0; j < LOANS_PER_BOOK; j++) {
+                loanRepository.save(Loan.builder()
+                        .book(book)
+                        .customer("cliente " + (i % 100))
+                        .customerEmail("cliente" + (i % 100) + "@email.com")
+                        .loanDate(LocalDate.now().minusDays(j))
+                        .returned(true)
+                        .build());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.libraryapi.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// compara o json gerado pelo JMH com o baseline guardado no repositório
+// args: <resultado> <baseline> <tolerancia (0.10 = 10%)> [gravar baseline (true/false)]
+// -> sem baseline o build quebra: gravar um novo só com -Djmh.recordBaseline=true (substitui o atual)
+// -> se algum benchmark piorar mais que a tolerância, o build quebra
+public class BenchmarkRegressionGate {
+
+    public static void main(String[] args) throws IOException {
+        Path result = Paths.get(args[0]);
+        Path baseline = Paths.get(args[1]);
+        double tolerance = Double.parseDouble(args[2]);
+        boolean recordBaseline = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        if (!Files.exists(result)) {
+            System.out.println("[jmh-gate] no benchmark result at " + result + ", nothing to check");
+            return;
+        }
+
+        if (recordBaseline) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("[jmh-gate] baseline recorded at " + baseline);
+            return;
+        }
+
+        // sem baseline não há com o que comparar -> um checkout novo (ou o CI) não pode passar em silêncio
+        if (!Files.exists(baseline)) {
+            System.out.println("[jmh-gate] no baseline at " + baseline
+                    + ", run once with -Djmh.recordBaseline=true on the reference machine and commit it");
+            System.exit(1);
+        }
+
+        Map<String, JsonNode> baselineScores = read(baseline);
+        Map<String, JsonNode> currentScores = read(result);
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : currentScores.entrySet()) {
+            JsonNode before = baselineScores.get(entry.getKey());
+            if (before == null) {
+                System.out.println("[jmh-gate] NEW        " + entry.getKey());
+                continue;
+            }
+
+            double previous = before.path("primaryMetric").path("score").asDouble();
+            double current = entry.getValue().path("primaryMetric").path("score").asDouble();
+            String unit = entry.getValue().path("primaryMetric").path("scoreUnit").asText();
+
+            // no modo throughput maior eh melhor, nos outros (tempo) menor eh melhor
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = higherIsBetter
+                    ? (previous - current) / previous
+                    : (current - previous) / previous;
+
+            boolean regressed = change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+
+            System.out.printf("[jmh-gate] %-10s %s: %.3f -> %.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESSION" : "OK",
+                    entry.getKey(), previous, current, unit, change * 100);
+        }
+
+        if (regressions > 0) {
+            System.out.println("[jmh-gate] " + regressions + " benchmark(s) regressed more than "
+                    + (tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    // chave = nome do benchmark + modo + parametros, para comparar o mesmo cenário
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> scores = new HashMap<>();
+        for (JsonNode node : new ObjectMapper().readTree(file.toFile())) {
+            String key = node.path("benchmark").asText() + " [" + node.path("mode").asText() + "]"
+                    + (node.has("params") ? " " + node.get("params") : "");
+            scores.put(key, node);
+        }
+        return scores;
+    }
+}
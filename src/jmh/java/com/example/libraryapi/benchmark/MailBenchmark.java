@@ -0,0 +1,97 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.service.EmailService;
+import com.example.libraryapi.service.impl.EmailServiceImpl;
+import com.example.libraryapi.service.impl.PooledSmtpEmailService;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// mensagens por segundo contra um smtp em processo (greenmail):
+// EmailServiceImpl (uma conexão por envio) x PooledSmtpEmailService (conexões reaproveitadas)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MailBenchmark {
+
+    private static final int BATCH = 50;
+
+    private GreenMail greenMail;
+    private EmailService perMessage;
+    private PooledSmtpEmailService pooled;
+    private List<String> recipients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // sem o spring subir, o logback fica em DEBUG e o log do greenmail domina o tempo medido
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+        greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+        greenMail.start();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+
+        perMessage = new EmailServiceImpl(mailSender);
+        ReflectionTestUtils.setField(perMessage, "remetent", "mail@library-api.com");
+        pooled = new PooledSmtpEmailService(mailSender, "mail@library-api.com", 4);
+
+        recipients = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            recipients.add("cliente" + i + "@email.com");
+        }
+    }
+
+    // o greenmail guarda tudo em memória -> limpa entre as iterações
+    @Setup(Level.Iteration)
+    public void purge() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        pooled.close();
+        greenMail.stop();
+    }
+
+    @Benchmark
+    public void perMessageSingle() {
+        perMessage.sendMail("cliente@email.com", "Emprestimo atrasado.");
+    }
+
+    @Benchmark
+    public void pooledSingle() {
+        pooled.sendMail("cliente@email.com", "Emprestimo atrasado.");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void perMessageBatch() {
+        for (String to : recipients) {
+            perMessage.sendMail(to, "Emprestimo atrasado.");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pooledBatch() {
+        pooled.sendMails("Emprestimo atrasado.", recipients);
+    }
+}
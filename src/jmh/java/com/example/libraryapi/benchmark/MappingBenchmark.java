@@ -0,0 +1,70 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.api.mapper.BookMapper;
+import com.example.libraryapi.api.mapper.BookMapperImpl;
+import com.example.libraryapi.api.mapper.LoanMapper;
+import com.example.libraryapi.api.mapper.LoanMapperImpl;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// mapeamento entity -> dto como era feito no BookController.find e no
+// LoanController.find (modelMapper, loan + livro aninhado) comparado com
+// os mappers gerados pelo mapstruct que os controllers usam hoje
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+    private Book book;
+    private Loan loan;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapperImpl();
+        loanMapper = new LoanMapperImpl(bookMapper);
+
+        book = Book.builder().id(1L).title("Aventuras").author("Fulano").isbn("123").build();
+        loan = Loan.builder().id(1L).book(book).customer("fulano")
+                .customerEmail("fulano@email.com").loanDate(LocalDate.now()).build();
+    }
+
+    @Benchmark
+    public BookDTO modelMapperBook() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public LoanDTO modelMapperLoan() {
+        BookDTO bookDTO = modelMapper.map(loan.getBook(), BookDTO.class);
+
+        LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+        loanDTO.setBook(bookDTO);
+        return loanDTO;
+    }
+
+    @Benchmark
+    public BookDTO mapstructBook() {
+        return bookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public LoanDTO mapstructLoan() {
+        return loanMapper.toDto(loan);
+    }
+}
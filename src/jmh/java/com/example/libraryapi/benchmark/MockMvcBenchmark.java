@@ -0,0 +1,59 @@
+package com.example.libraryapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+// ciclo completo da requisição: dispatcher, binding, service, repository,
+// mapeamento e serialização do json
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MockMvcBenchmark {
+
+    private MockMvc mvc;
+    private Long bookId;
+
+    @Setup
+    public void setUp(ApplicationState state) {
+        mvc = state.mvc;
+        bookId = state.bookIds.get(state.bookIds.size() / 2);
+    }
+
+    @Benchmark
+    public MvcResult getBook() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders
+                .get("/api/books/" + bookId)
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult findBooks() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders
+                .get("/api/books?title=titulo 1&page=0&size=20")
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult findLoans() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders
+                .get("/api/loans?isbn=isbn-1&customer=cliente 1&page=0&size=20")
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult loansByBook() throws Exception {
+        return mvc.perform(MockMvcRequestBuilders
+                .get("/api/books/" + bookId + "/loans?page=0&size=20")
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+}
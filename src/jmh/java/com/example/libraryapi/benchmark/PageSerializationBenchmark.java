@@ -0,0 +1,98 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.api.dto.PageDTO;
+import com.example.libraryapi.api.json.BookDTOSerializer;
+import com.example.libraryapi.api.json.LoanDTOSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+// pagina de 20 emprestimos (com o livro aninhado) e de 20 livros:
+// PageImpl + serializador por reflexão (como era) x PageDTO + BookDTOSerializer/LoanDTOSerializer
+// SampleTime -> o resultado traz os percentis (p99); o tamanho de cada corpo sai no console no setup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectMapper reflective;
+    private ObjectMapper tuned;
+
+    private Page<LoanDTO> loanPage;
+    private Page<BookDTO> bookPage;
+    private PageDTO<LoanDTO> loanPageDTO;
+    private PageDTO<BookDTO> bookPageDTO;
+
+    @Setup
+    public void setUp() throws Exception {
+        reflective = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        tuned = reflective.copy()
+                .registerModule(new SimpleModule()
+                        .addSerializer(BookDTO.class, new BookDTOSerializer())
+                        .addSerializer(LoanDTO.class, new LoanDTOSerializer()));
+
+        List<LoanDTO> loans = new ArrayList<>();
+        List<BookDTO> books = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            BookDTO book = BookDTO.builder().id((long) i).title("titulo " + i).author("autor " + i)
+                    .isbn("isbn-" + i).available(i % 2 == 0).build();
+            books.add(book);
+            loans.add(LoanDTO.builder().id((long) i).isbn(book.getIsbn()).customer("cliente " + i)
+                    .customerEmail("cliente" + i + "@email.com").book(book)
+                    .loanDate(LocalDate.now().minusDays(i)).returned(false).build());
+        }
+
+        PageRequest pageable = PageRequest.of(3, PAGE_SIZE, Sort.by("loanDate"));
+        loanPage = new PageImpl<>(loans, pageable, 1_000);
+        bookPage = new PageImpl<>(books, pageable, 1_000);
+        loanPageDTO = PageDTO.of(loanPage, loan -> loan);
+        bookPageDTO = PageDTO.of(bookPage, book -> book);
+
+        System.out.printf("[payload] loans: PageImpl=%d bytes, PageDTO=%d bytes%n",
+                pageImplLoans().length, pageDtoLoans().length);
+        System.out.printf("[payload] books: PageImpl=%d bytes, PageDTO=%d bytes%n",
+                pageImplBooks().length, pageDtoBooks().length);
+    }
+
+    @Benchmark
+    public byte[] pageImplLoans() throws Exception {
+        return reflective.writeValueAsBytes(loanPage);
+    }
+
+    @Benchmark
+    public byte[] pageDtoLoans() throws Exception {
+        return tuned.writeValueAsBytes(loanPageDTO);
+    }
+
+    @Benchmark
+    public byte[] pageImplBooks() throws Exception {
+        return reflective.writeValueAsBytes(bookPage);
+    }
+
+    @Benchmark
+    public byte[] pageDtoBooks() throws Exception {
+        return tuned.writeValueAsBytes(bookPageDTO);
+    }
+}
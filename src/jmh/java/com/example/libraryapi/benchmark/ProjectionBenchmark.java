@@ -0,0 +1,79 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.api.mapper.BookMapper;
+import com.example.libraryapi.api.mapper.LoanMapper;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+
+// uma pagina de 20 emprestimos (com o livro) e de 20 livros contra o h2 populado:
+// entidades gerenciadas + mapstruct (como era) x select new LoanDTO/BookDTO (como eh hoje)
+// rodar com -prof gc -> gc.alloc.rate.norm eh a alocação por pagina
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+    private static final PageRequest PAGE = PageRequest.of(1, 20);
+
+    private BookRepository bookRepository;
+    private LoanRepository loanRepository;
+    private BookMapper bookMapper;
+    private LoanMapper loanMapper;
+
+    private Example<Book> byAuthor;
+
+    @Setup
+    public void setUp(ApplicationState state) {
+        bookRepository = state.getBean(BookRepository.class);
+        loanRepository = state.getBean(LoanRepository.class);
+        bookMapper = state.getBean(BookMapper.class);
+        loanMapper = state.getBean(LoanMapper.class);
+
+        // "autor 1" -> autor 1, autor 10..19 -> 220 livros
+        byAuthor = Example.of(Book.builder().author("autor 1").build(), ExampleMatcher.matching()
+                .withIgnoreCase()
+                .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+    }
+
+    @Benchmark
+    public List<LoanDTO> entityLoans() {
+        return loanRepository.findByBookIsbnOrCustomer("nenhum", "cliente 1", PAGE)
+                .getContent().stream()
+                .map(loanMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<LoanDTO> projectionLoans() {
+        return loanRepository.findDtoByBookIsbnOrCustomer("nenhum", "cliente 1", PAGE).getContent();
+    }
+
+    @Benchmark
+    public List<BookDTO> entityBooks() {
+        return bookRepository.findAll(byAuthor, PAGE)
+                .getContent().stream()
+                .map(bookMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> projectionBooks() {
+        return bookRepository.findDtos(byAuthor, PAGE).getContent();
+    }
+}
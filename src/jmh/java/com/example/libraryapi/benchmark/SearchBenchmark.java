@@ -0,0 +1,72 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.service.BookSearchIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// busca "titulo contém x" num catálogo de 1 milhão de livros:
+// varredura com contains (o que o lower(title) like '%x%' faz no banco) x indice de trigramas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SearchBenchmark {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int WORDS = 5_000;
+
+    // termo raro (um livro), termo comum (~0,06% do catálogo)
+    @Param({"palavra4321 palavra1234", "palavra777"})
+    public String query;
+
+    private BookSearchIndex index;
+    private List<String> titles;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new BookSearchIndex(null);
+        titles = new ArrayList<>(BOOKS);
+
+        for (long id = 1; id <= BOOKS; id++) {
+            String title = "palavra" + random.nextInt(WORDS)
+                    + " palavra" + random.nextInt(WORDS)
+                    + " palavra" + random.nextInt(WORDS);
+            if (id == BOOKS / 2) {
+                title = "palavra4321 palavra1234 palavra1";
+            }
+            titles.add(title.toLowerCase(Locale.ROOT));
+            index.put(Book.builder().id(id).title(title).author("autor " + (id % 1000)).isbn("isbn-" + id).build());
+        }
+        index.markReady();
+    }
+
+    @Benchmark
+    public int scan() {
+        int found = 0;
+        for (String title : titles) {
+            if (title.contains(query)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public BookSearchIndex.Result index() {
+        return index.search(query, null, 0, 10);
+    }
+}
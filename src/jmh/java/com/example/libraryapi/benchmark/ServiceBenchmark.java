@@ -0,0 +1,69 @@
+package com.example.libraryapi.benchmark;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.LoanService;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+// BookServiceImpl.find (query por Example) e LoanServiceImpl.save
+// (verificação de empréstimo ativo + insert) contra o h2 populado
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceBenchmark {
+
+    private BookService bookService;
+    private LoanService loanService;
+
+    private Book book;
+    private Loan lastLoan;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState state) {
+        bookService = state.getBean(BookService.class);
+        loanService = state.getBean(LoanService.class);
+
+        book = state.getBean(BookRepository.class).findById(state.bookIds.get(0)).orElseThrow();
+    }
+
+    // devolve o livro do último empréstimo para que o próximo save não caia em "Book already loaned."
+    @Setup(Level.Invocation)
+    public void returnLastLoan() {
+        if (lastLoan != null) {
+            lastLoan.setReturned(true);
+            loanService.update(lastLoan);
+            lastLoan = null;
+        }
+    }
+
+    @Benchmark
+    public Page<BookDTO> findBooks() {
+        Book filter = Book.builder().title("titulo 1").build();
+        return bookService.find(filter, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Loan saveLoan() {
+        lastLoan = loanService.save(Loan.builder()
+                .book(book)
+                .customer("fulano")
+                .customerEmail("fulano@email.com")
+                .loanDate(LocalDate.now())
+                .build());
+        return lastLoan;
+    }
+}
@@ -1,9 +1,7 @@
 package com.example.libraryapi;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
@@ -24,14 +22,8 @@ public class LibraryApiApplication {
 //		};
 //	}
 
-	// injetando o modelMapper no contexto
-	// será um singleton usado por toda a aplicação
-	// preciso que o dto e a entity tenham propriedades com o mesmo nome
-	// para que funcione
-	@Bean
-	public ModelMapper modelMapper(){
-		return new ModelMapper();
-	}
+	// o mapeamento entity <-> dto eh feito pelos mappers do mapstruct (api.mapper)
+	// gerados na compilação -> não precisamos mais do bean do modelMapper
 
 	// qualquer anotação do spring pode ter um método com @scheduled
 	// basta ter o @EnableScheduling na classe de configuração
@@ -2,6 +2,7 @@ package com.example.libraryapi.api;
 
 import com.example.libraryapi.api.exception.ApiErrors;
 import com.example.libraryapi.exception.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -33,6 +34,14 @@ public class ApplicationControllerAdvice {
         return new ApiErrors(exception);
     }
 
+    //exceptionHandler do lock otimista (@Version) -> outro pedido alterou o registro no meio do caminho
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErrors handleOptimisticLockingFailure(OptimisticLockingFailureException exception){
+
+        return new ApiErrors(new BusinessException("Resource was modified concurrently."));
+    }
+
     //exceptionHandler do erro ResponseStatusException
     @ExceptionHandler(ResponseStatusException.class)
     @ResponseStatus
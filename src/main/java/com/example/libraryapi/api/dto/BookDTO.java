@@ -23,4 +23,7 @@ public class BookDTO {
 
     @NotEmpty(message = "isbn must not be empty")
     private String isbn;
+
+    // só leitura -> false quando o livro tem um emprestimo em aberto
+    private Boolean available;
 }
@@ -0,0 +1,34 @@
+package com.example.libraryapi.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// resultado da importação em massa -> quantas linhas chegaram, quantas
+// viraram livro, quantas foram recusadas e o erro das primeiras recusadas
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportReportDTO {
+
+    private long received;
+    private long imported;
+    private long rejected;
+
+    // só as primeiras (application.books.import.max-errors); o total fica em rejected
+    @Builder.Default
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String isbn;
+        private List<String> errors;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.libraryapi.api.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// pagina da paginação por keyset -> sem total (não roda count)
+// o cliente pede a proxima pagina mandando o "next" no parametro "after"
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String next;
+}
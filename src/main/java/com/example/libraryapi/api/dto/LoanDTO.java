@@ -1,5 +1,6 @@
 package com.example.libraryapi.api.dto;
 
+import java.time.LocalDate;
 import javax.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -23,4 +24,15 @@ public class LoanDTO {
     @NotEmpty
     private String customerEmail;
     private BookDTO book;
+
+    // só saída (preenchidos pelo mapper, ignorados no cadastro)
+    private LocalDate loanDate;
+    private Boolean returned;
+
+    // projeção das consultas de leitura do LoanRepository (select new ...)
+    // -> emprestimo e livro chegam numa linha só, sem entidade no contexto de persistencia
+    public LoanDTO(Long id, String customer, String customerEmail, LocalDate loanDate, Boolean returned,
+                   Long bookId, String title, String author, String isbn, Boolean available) {
+        this(id, isbn, customer, customerEmail, new BookDTO(bookId, title, author, isbn, available), loanDate, returned);
+    }
 }
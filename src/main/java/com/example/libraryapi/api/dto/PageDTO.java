@@ -0,0 +1,39 @@
+package com.example.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+// pagina por OFFSET -> só o que o cliente usa
+// (o PageImpl serializado levava junto o pageable e o sort inteiros em toda resposta)
+// total só vem quando houve count (?count=false devolve só o hasNext)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDTO<T> {
+
+    private List<T> content;
+    private int page;
+    private int size;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long total;
+    private boolean hasNext;
+
+    public static <E, T> PageDTO<T> of(Slice<E> slice, Function<E, T> mapper) {
+        List<T> content = slice.getContent()
+                .stream()
+                .map(mapper)
+                .collect(Collectors.toList());
+
+        Long total = slice instanceof Page ? ((Page<E>) slice).getTotalElements() : null;
+        return new PageDTO<>(content, slice.getNumber(), slice.getSize(), total, slice.hasNext());
+    }
+}
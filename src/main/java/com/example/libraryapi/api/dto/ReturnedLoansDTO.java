@@ -0,0 +1,27 @@
+package com.example.libraryapi.api.dto;
+
+import java.util.List;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// devolução em lote (PATCH /api/loans) -> { "ids": [1, 2, 3], "returned": true }
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnedLoansDTO {
+
+    public static final int MAX_IDS = 1000;
+
+    @NotEmpty(message = "ids must not be empty")
+    @Size(max = MAX_IDS, message = "at most " + MAX_IDS + " ids per request")
+    private List<Long> ids;
+
+    @NotNull(message = "returned must not be null")
+    private Boolean returned;
+}
@@ -0,0 +1,23 @@
+package com.example.libraryapi.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// resultado da devolução em lote -> os ids atualizados e os que não foram: não existem
+// ou, na reabertura (returned = false), o livro já está emprestado para outro
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnedLoansReportDTO {
+
+    @Builder.Default
+    private List<Long> updated = new ArrayList<>();
+
+    @Builder.Default
+    private List<Long> notFound = new ArrayList<>();
+}
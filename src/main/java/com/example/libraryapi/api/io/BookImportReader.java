@@ -0,0 +1,172 @@
+package com.example.libraryapi.api.io;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// lê o corpo da importação em massa linha a linha (sem carregar tudo na memória)
+// -> NDJSON: um BookDTO em json por linha
+// -> CSV: primeira linha com o cabeçalho (title, author, isbn em qualquer ordem)
+public abstract class BookImportReader implements Iterator<BookImportReader.Row> {
+
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    @Getter
+    @AllArgsConstructor
+    public static class Row {
+        private final long line;
+        private final BookDTO book;
+        // preenchido quando a linha nem chegou a virar um BookDTO
+        private final String error;
+    }
+
+    protected final BufferedReader reader;
+    private long line;
+    private Row next;
+
+    protected BookImportReader(InputStream body) {
+        this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    public static BookImportReader of(String contentType, InputStream body, ObjectMapper objectMapper) {
+        if (contentType != null && contentType.startsWith(CSV)) {
+            return new Csv(body);
+        }
+        return new NdJson(body, objectMapper);
+    }
+
+    protected abstract Row parse(long line, String content);
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            String content;
+            while ((content = reader.readLine()) != null) {
+                line++;
+                if (!content.isBlank()) {
+                    next = parse(line, content);
+                    if (next != null) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = next;
+        next = null;
+        return row;
+    }
+
+    private static class NdJson extends BookImportReader {
+
+        private final ObjectMapper objectMapper;
+
+        NdJson(InputStream body, ObjectMapper objectMapper) {
+            super(body);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        protected Row parse(long line, String content) {
+            try {
+                return new Row(line, objectMapper.readValue(content, BookDTO.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(line, null, "invalid json: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static class Csv extends BookImportReader {
+
+        private int title = -1;
+        private int author = -1;
+        private int isbn = -1;
+        private boolean header = true;
+
+        Csv(InputStream body) {
+            super(body);
+        }
+
+        @Override
+        protected Row parse(long line, String content) {
+            List<String> columns = split(content);
+
+            // a primeira linha eh o cabeçalho -> não vira livro
+            if (header) {
+                header = false;
+                for (int i = 0; i < columns.size(); i++) {
+                    String name = columns.get(i).trim().toLowerCase();
+                    if (name.equals("title")) title = i;
+                    if (name.equals("author")) author = i;
+                    if (name.equals("isbn")) isbn = i;
+                }
+                return null;
+            }
+
+            return new Row(line, BookDTO.builder()
+                    .title(column(columns, title))
+                    .author(column(columns, author))
+                    .isbn(column(columns, isbn))
+                    .build(), null);
+        }
+
+        private static String column(List<String> columns, int index) {
+            return index >= 0 && index < columns.size() ? columns.get(index) : null;
+        }
+
+        // campos separados por vírgula, com aspas duplas opcionais ("" dentro das aspas = ")
+        private static List<String> split(String content) {
+            List<String> columns = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    columns.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            columns.add(current.toString());
+            return columns;
+        }
+    }
+}
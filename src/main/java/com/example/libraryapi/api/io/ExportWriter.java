@@ -0,0 +1,150 @@
+package com.example.libraryapi.api.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// escreve uma linha por registro direto no corpo da resposta (NDJSON ou CSV)
+// -> nada eh acumulado em lista, a memória fica constante qualquer que seja o tamanho da tabela
+public abstract class ExportWriter<T> implements Consumer<T> {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    public static boolean isSupported(String format) {
+        return NDJSON.equalsIgnoreCase(format) || CSV.equalsIgnoreCase(format);
+    }
+
+    protected abstract void write(T row) throws IOException;
+
+    protected abstract void finish() throws IOException;
+
+    @Override
+    public void accept(T row) {
+        try {
+            write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // monta a resposta de exportação: o source recebe o writer e empurra os registros nele
+    public static <T> ResponseEntity<StreamingResponseBody> response(String name,
+                                                                     String format,
+                                                                     boolean gzip,
+                                                                     ObjectMapper objectMapper,
+                                                                     String[] csvHeader,
+                                                                     Function<T, Object[]> csvRow,
+                                                                     Consumer<Consumer<T>> source) {
+        boolean csv = CSV.equalsIgnoreCase(format);
+
+        StreamingResponseBody body = output -> {
+            OutputStream out = gzip ? new GZIPOutputStream(output, 8192) : output;
+            ExportWriter<T> writer = csv
+                    ? new Csv<>(out, csvHeader, csvRow)
+                    : new NdJson<>(out, objectMapper);
+            source.accept(writer);
+            writer.finish();
+            if (gzip) {
+                ((GZIPOutputStream) out).finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, csv ? "text/csv" : "application/x-ndjson")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + (csv ? ".csv" : ".ndjson") + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private static class NdJson<T> extends ExportWriter<T> {
+
+        private final SequenceWriter writer;
+
+        NdJson(OutputStream out, ObjectMapper objectMapper) {
+            try {
+                this.writer = objectMapper.writer()
+                        .withRootValueSeparator("\n")
+                        .writeValues(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected void write(T row) throws IOException {
+            writer.write(row);
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static class Csv<T> extends ExportWriter<T> {
+
+        private final Writer writer;
+        private final Function<T, Object[]> columns;
+
+        Csv(OutputStream out, String[] header, Function<T, Object[]> columns) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.columns = columns;
+            try {
+                writer.write(line(header));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void accept(T row) {
+            if (row != null) {
+                super.accept(row);
+            }
+        }
+
+        @Override
+        protected void write(T row) throws IOException {
+            writer.write(line(columns.apply(row)));
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            writer.flush();
+        }
+
+        private static String line(Object[] values) {
+            return Arrays.stream(values).map(Csv::escape).collect(Collectors.joining(",")) + "\n";
+        }
+
+        // aspas quando o valor tem virgula, aspas ou quebra de linha
+        private static String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+                return "\"" + text.replace("\"", "\"\"") + "\"";
+            }
+            return text;
+        }
+    }
+}
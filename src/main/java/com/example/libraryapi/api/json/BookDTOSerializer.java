@@ -0,0 +1,44 @@
+package com.example.libraryapi.api.json;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+import org.springframework.boot.jackson.JsonComponent;
+
+// BookDTO escrito campo a campo no gerador (sem introspecção do bean)
+// -> mesmo json do serializador padrão: mesma ordem de campos e nulls incluidos
+@JsonComponent
+public class BookDTOSerializer extends JsonSerializer<BookDTO> {
+
+    // nomes já escapados/codificados uma vez só
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString TITLE = new SerializedString("title");
+    private static final SerializableString AUTHOR = new SerializedString("author");
+    private static final SerializableString ISBN = new SerializedString("isbn");
+    private static final SerializableString AVAILABLE = new SerializedString("available");
+
+    @Override
+    public void serialize(BookDTO book, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        write(book, gen);
+    }
+
+    // usado também para o livro aninhado no LoanDTOSerializer
+    static void write(BookDTO book, JsonGenerator gen) throws IOException {
+        gen.writeStartObject(book);
+        gen.writeFieldName(ID);
+        Fields.writeNumber(gen, book.getId());
+        gen.writeFieldName(TITLE);
+        gen.writeString(book.getTitle());
+        gen.writeFieldName(AUTHOR);
+        gen.writeString(book.getAuthor());
+        gen.writeFieldName(ISBN);
+        gen.writeString(book.getIsbn());
+        gen.writeFieldName(AVAILABLE);
+        Fields.writeBoolean(gen, book.getAvailable());
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.libraryapi.api.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+
+// campos que podem ser null (writeString já escreve null sozinho)
+final class Fields {
+
+    private Fields() {
+    }
+
+    static void writeNumber(JsonGenerator gen, Long value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(value);
+        }
+    }
+
+    static void writeBoolean(JsonGenerator gen, Boolean value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeBoolean(value);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.libraryapi.api.json;
+
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+import org.springframework.boot.jackson.JsonComponent;
+
+// LoanDTO campo a campo, com o livro aninhado pelo BookDTOSerializer
+// -> loanDate sai como o "yyyy-MM-dd" do JavaTimeModule (datas não viram timestamp no spring boot)
+@JsonComponent
+public class LoanDTOSerializer extends JsonSerializer<LoanDTO> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString ISBN = new SerializedString("isbn");
+    private static final SerializableString CUSTOMER = new SerializedString("customer");
+    private static final SerializableString CUSTOMER_EMAIL = new SerializedString("customerEmail");
+    private static final SerializableString BOOK = new SerializedString("book");
+    private static final SerializableString LOAN_DATE = new SerializedString("loanDate");
+    private static final SerializableString RETURNED = new SerializedString("returned");
+
+    @Override
+    public void serialize(LoanDTO loan, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartObject(loan);
+        gen.writeFieldName(ID);
+        Fields.writeNumber(gen, loan.getId());
+        gen.writeFieldName(ISBN);
+        gen.writeString(loan.getIsbn());
+        gen.writeFieldName(CUSTOMER);
+        gen.writeString(loan.getCustomer());
+        gen.writeFieldName(CUSTOMER_EMAIL);
+        gen.writeString(loan.getCustomerEmail());
+        gen.writeFieldName(BOOK);
+        if (loan.getBook() == null) {
+            gen.writeNull();
+        } else {
+            BookDTOSerializer.write(loan.getBook(), gen);
+        }
+        gen.writeFieldName(LOAN_DATE);
+        gen.writeString(loan.getLoanDate() == null ? null : loan.getLoanDate().toString());
+        gen.writeFieldName(RETURNED);
+        Fields.writeBoolean(gen, loan.getReturned());
+        gen.writeEndObject();
+    }
+}
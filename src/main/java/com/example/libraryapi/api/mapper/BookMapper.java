@@ -0,0 +1,21 @@
+package com.example.libraryapi.api.mapper;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.model.entity.Book;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+// implementação gerada pelo mapstruct na compilação (BookMapperImpl)
+// -> sem reflexão nem matching por convenção a cada requisição
+@Mapper(componentModel = "spring")
+public interface BookMapper {
+
+    // disponibilidade vem de graça do marcador de emprestimo ativo do livro
+    @Mapping(target = "available", expression = "java( book.getActiveLoanId() == null )")
+    BookDTO toDto(Book book);
+
+    @Mapping(target = "loans", ignore = true)
+    @Mapping(target = "activeLoanId", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Book toEntity(BookDTO dto);
+}
@@ -0,0 +1,24 @@
+package com.example.libraryapi.api.mapper;
+
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.model.entity.Loan;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+// o livro aninhado eh mapeado pelo BookMapper e o isbn eh achatado de loan.book.isbn
+@Mapper(componentModel = "spring", uses = BookMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface LoanMapper {
+
+    @Mapping(target = "isbn", source = "book.isbn")
+    LoanDTO toDto(Loan loan);
+
+    // o livro eh buscado pelo isbn no controller e a data eh a do dia do emprestimo
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "book", ignore = true)
+    @Mapping(target = "loanDate", ignore = true)
+    @Mapping(target = "returned", ignore = true)
+    @Mapping(target = "overdueNotifiedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Loan toEntity(LoanDTO dto);
+}
@@ -1,27 +1,47 @@
 package com.example.libraryapi.api.resource;
 
 import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.BookImportReportDTO;
+import com.example.libraryapi.api.dto.CursorPageDTO;
 import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.api.dto.PageDTO;
+import com.example.libraryapi.api.io.BookImportReader;
+import com.example.libraryapi.api.io.ExportWriter;
+import com.example.libraryapi.api.mapper.BookMapper;
 import com.example.libraryapi.model.entity.Book;
-import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.LoanRepository;
+import com.example.libraryapi.service.BookImporter;
 import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.KeysetCursor;
 import com.example.libraryapi.service.LoanService;
+import com.example.libraryapi.service.LoansByBook;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,9 +52,13 @@ import java.util.stream.Collectors;
 public class BookController {
 
     private final BookService service;
-    private final ModelMapper modelMapper;
+    private final BookMapper bookMapper;
 
     private final LoanService loanService;
+    private final BookImporter bookImporter;
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -44,27 +68,74 @@ public class BookController {
         log.info("creating a book for isbn: {}", dto.getIsbn());
 
         // de dto para book
-        Book book = modelMapper.map(dto, Book.class);
+        Book book = bookMapper.toEntity(dto);
 
         book = (Book) service.save(book);
 
         // de book para dto
-        return modelMapper.map(book, BookDTO.class);
+        return bookMapper.toDto(book);
+
+    }
 
+    // importação em massa -> o corpo (NDJSON ou CSV) eh lido como stream, linha a linha;
+    // aqui só a leitura e a validação, os lotes e o relatório ficam no BookImporter
+    @PostMapping(value = "/bulk", consumes = { BookImportReader.NDJSON, BookImportReader.CSV })
+    @ApiOperation("IMPORT BOOKS IN BULK FROM NDJSON OR CSV") // dando nome no swagger
+    public BookImportReportDTO importBooks(HttpServletRequest request) throws IOException {
+
+        log.info("importing books in bulk ({})", request.getContentType());
+
+        BookImportReader rows = BookImportReader.of(request.getContentType(), request.getInputStream(), objectMapper);
+
+        return bookImporter.importBooks(new Iterator<BookImporter.Row>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public BookImporter.Row next() {
+                BookImportReader.Row row = rows.next();
+                Book book = row.getBook() == null ? null : bookMapper.toEntity(row.getBook());
+                return new BookImporter.Row(row.getLine(), book, validate(row));
+            }
+        });
+    }
+
+    private List<String> validate(BookImportReader.Row row) {
+        if (row.getError() != null) {
+            return Collections.singletonList(row.getError());
+        }
+        return validator.validate(row.getBook())
+                .stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.toList());
     }
 
     @GetMapping("/{id}")
     @ApiOperation("OBTAINS A BOOK DETAILS BY ID") // dando nome no swagger
-    public BookDTO get(@PathVariable Long id){
+    public ResponseEntity<BookDTO> get(@PathVariable Long id, WebRequest request){
 
         // informando que estou obtando os detalhes de livro de id ____
         log.info("obtaining details for book id: {}", id);
 
-        // procura o livro
+        // cliente já tem uma versão (If-None-Match) -> compara só a coluna version, no primary,
+        // e, se não mudou, 304 sem carregar nem mapear o livro
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String etag = service.getVersion(id)
+                    .map( ETags::of )
+                    .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+            if (ETags.isNotModified(request, etag)) {
+                return ETags.notModified(etag);
+            }
+        }
+
+        // procura o livro (pode vir de um replica atrasado -> o ETag eh o da versão lida)
         // -> se existir retorna o dto dele
         // -> senão retornar uma exceção com cod not found
         return service.getById(id)
-                .map( book -> modelMapper.map(book, BookDTO.class) )
+                .map( book -> ETags.ok(ETags.of(book.getVersion())).body(bookMapper.toDto(book)) )
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
 
     }
@@ -80,7 +151,7 @@ public class BookController {
         // informando que estou deletando livro de id ____
         log.info("deleting book of id: {}", id);
 
-        Book book = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        Book book = service.getByIdForUpdate(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
 
         service.delete(book);
 
@@ -88,7 +159,7 @@ public class BookController {
 
     @PutMapping("/{id}")
     @ApiOperation("UPDATE A BOOK BY ID") // dando nome no swagger
-    public BookDTO update( @PathVariable Long id, @RequestBody @Valid BookDTO dto){
+    public ResponseEntity<BookDTO> update( @PathVariable Long id, @RequestBody @Valid BookDTO dto, WebRequest request){
 
         // informando que estou updating livro de id ____
         log.info("updating book of id: {}", id);
@@ -96,18 +167,26 @@ public class BookController {
         // verificando se o livro existe na base
         //se existir atualiza e retorna o dto
         //se não, retorna exception com cod notfound
-        return service.getById( id )
+        // -> do primary: a versão do If-Match e o livro copiado são os atuais
+        return service.getByIdForUpdate( id )
                 .map( book_found ->
                 {
-                    //atualizando objeto a partir do json
-                    book_found.setAuthor( dto.getAuthor() );
-                    book_found.setTitle( dto.getTitle() );
+                    // If-Match -> só atualiza a versão que o cliente viu (senão 412);
+                    // alteração entre a leitura e o update cai no @Version (409)
+                    ETags.checkIfMatch(request, ETags.of(book_found.getVersion()));
+
+                    //atualizando uma cópia a partir do json
+                    // -> o livro encontrado (da sessão do open-in-view) fica intacto se o update falhar (409)
+                    Book changes = book_found.toBuilder()
+                            .author( dto.getAuthor() )
+                            .title( dto.getTitle() )
+                            .build();
 
                     //atualizando no bd
-                    book_found = service.update(book_found);
+                    book_found = service.update(changes);
 
-                    // retornando um dto a partir do livro atualiado
-                    return modelMapper.map(book_found, BookDTO.class);
+                    // retornando um dto a partir do livro atualiado (com a nova versão no ETag)
+                    return ETags.ok(ETags.of(book_found.getVersion())).body(bookMapper.toDto(book_found));
 
                 })
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
@@ -117,46 +196,91 @@ public class BookController {
 
     @GetMapping
     @ApiOperation("FIND BOOKS BY PARAMS") // dando nome no swagger
-    public Page<BookDTO> find(BookDTO dto, Pageable pageRequest){
+    public PageDTO<BookDTO> find(BookDTO dto, Pageable pageRequest,
+                                 @RequestParam(defaultValue = "true") boolean count){
 
-        Book filter = modelMapper.map(dto, Book.class);
+        Book filter = bookMapper.toEntity(dto);
 
         // mandando buscar através do pageable (retorna uma lista)
-        Page<Book> result = service.find(filter, pageRequest);
+        // count=false -> sem a query de count, só o hasNext
+        // os livros já chegam como BookDTO (projeção no repository), sem passar pelo mapper
+        Slice<BookDTO> result = count
+                ? service.find(filter, pageRequest)
+                : service.findWithoutCount(filter, pageRequest);
+
+        // retornando só content, page, size, total e hasNext
+        return PageDTO.of(result, Function.identity());
+    }
+
+    // paginação por keyset (sem OFFSET e sem count)
+    // primeira pagina -> ?after=&size=20 ; proximas -> ?after=<next da pagina anterior>
+    @GetMapping(params = "after")
+    @ApiOperation("FIND BOOKS BY PARAMS WITH CURSOR PAGINATION") // dando nome no swagger
+    public CursorPageDTO<BookDTO> findAfter(BookDTO dto,
+                                            @RequestParam String after,
+                                            @RequestParam(defaultValue = "20") int size){
+
+        if (size < 1){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be greater than zero");
+        }
+
+        Slice<Book> result = service.find(bookMapper.toEntity(dto), after, size);
 
-        // mandando cada elemento da lista ser passado de livro para livrodto
-        // e guardando numa lista de BookDTO
         List<BookDTO> list = result.getContent()
                 .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .map(bookMapper::toDto)
                 .collect(Collectors.toList());
 
-        //retornando o pageable de booksdto
-        return new PageImpl<BookDTO>(  list, (Pageable) pageRequest, result.getTotalElements()  );
+        String next = result.hasNext()
+                ? KeysetCursor.of( result.getContent().get(result.getNumberOfElements() - 1) ).encode()
+                : null;
+
+        return new CursorPageDTO<>(list, size, result.hasNext(), next);
+    }
+
+    // exportação do catálogo inteiro direto de um cursor do banco para o corpo da resposta
+    // -> ?format=ndjson|csv&gzip=true
+    @GetMapping("/export")
+    @ApiOperation("EXPORT ALL BOOKS AS NDJSON OR CSV") // dando nome no swagger
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = ExportWriter.NDJSON) String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip){
+
+        if (!ExportWriter.isSupported(format)){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        }
+
+        return ExportWriter.<BookDTO>response("books", format, gzip, objectMapper,
+                new String[]{"id", "title", "author", "isbn", "available"},
+                book -> new Object[]{book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getAvailable()},
+                writer -> service.exportBooks( book -> writer.accept(bookMapper.toDto(book)) ));
     }
 
     //esse será um subrecurso -> pelo id de um livro, vou trazer de que emprestimos ele faz parte
     @GetMapping("/{id}/loans")
     @ApiOperation("OBTAINS LOANS OF A BOOK BY ITS ID") // dando nome no swagger
-    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable){
-
-        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public ResponseEntity<PageDTO<LoanDTO>> loansByBook(@PathVariable Long id, Pageable pageable, WebRequest request){
 
-        Page<Loan> loansByBook = loanService.getLoansByBook(book, pageable);
+        // com If-None-Match a versão (uma linha agregada, do primary) vem antes -> se igual
+        // responde 304 sem buscar a pagina nem mapear os emprestimos
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String etag = loanService.getLoansByBookVersion(id)
+                    .map( BookController::loansEtag )
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            if (ETags.isNotModified(request, etag)) {
+                return ETags.notModified(etag);
+            }
+        }
 
-        List<LoanDTO> list = loansByBook.getContent()
-                .stream()
-                .map(loan -> {
-                    Book loanBook = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
+        // a pagina sai da projeção, com o livro aninhado, e o ETag da versão lida junto com ela
+        LoansByBook loansByBook = loanService.getLoansByBook(id, pageable)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
+        return ETags.ok(loansEtag(loansByBook.getVersion())).body(PageDTO.of(loansByBook.getPage(), Function.identity()));
 
-        return new PageImpl<>(list, pageable, list.size());
+    }
 
+    private static String loansEtag(LoanRepository.LoansVersion version) {
+        return ETags.of(version.getBookVersion(), version.getLoans(), version.getLoanVersions());
     }
 
 }
@@ -0,0 +1,67 @@
+package com.example.libraryapi.api.resource;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+// ETags fortes a partir das colunas @Version
+// -> If-None-Match (GET) e If-Match (PUT/PATCH) conferidos aqui; o request.checkNotModified do
+//    spring grava o ETag conferido (o do primary) na resposta mesmo quando ela segue com 200,
+//    e o corpo lido do replica sairia com o ETag de outra versão
+final class ETags {
+
+    private ETags() {
+    }
+
+    // "<parte>-<parte>..." ou null se faltar alguma versão (sem ETag na resposta)
+    static String of(Object... parts) {
+        if (Arrays.stream(parts).anyMatch(Objects::isNull)) {
+            return null;
+        }
+        return Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    // 200 com o ETag (quando houver versão)
+    static ResponseEntity.BodyBuilder ok(String etag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        return etag == null ? response : response.eTag(etag);
+    }
+
+    // If-None-Match com a versão atual (comparação fraca: ignora o W/) -> o GET responde notModified
+    static boolean isNotModified(WebRequest request, String etag) {
+        String[] ifNoneMatch = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && etag != null && matches(ifNoneMatch, etag, true);
+    }
+
+    // 304 sem corpo, com o ETag conferido
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    // sem If-Match -> segue; "*" -> qualquer versão; senão uma das tags precisa ser igual (comparação forte)
+    static void checkIfMatch(WebRequest request, String etag) {
+        String[] ifMatch = request.getHeaderValues(HttpHeaders.IF_MATCH);
+        if (ifMatch == null) {
+            return;
+        }
+
+        if (!matches(ifMatch, etag, false)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource was modified.");
+        }
+    }
+
+    private static boolean matches(String[] headers, String etag, boolean weak) {
+        return Arrays.stream(headers)
+                .flatMap(header -> Arrays.stream(header.split(",")))
+                .map(String::trim)
+                .map(tag -> weak && tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+}
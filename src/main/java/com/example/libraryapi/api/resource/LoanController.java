@@ -1,31 +1,44 @@
 package com.example.libraryapi.api.resource;
 
-import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.CursorPageDTO;
 import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.api.dto.LoanFilterDTO;
+import com.example.libraryapi.api.dto.PageDTO;
 import com.example.libraryapi.api.dto.ReturnedLoanDTO;
+import com.example.libraryapi.api.dto.ReturnedLoansDTO;
+import com.example.libraryapi.api.dto.ReturnedLoansReportDTO;
+import com.example.libraryapi.api.io.ExportWriter;
+import com.example.libraryapi.api.mapper.LoanMapper;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
 import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.KeysetCursor;
 import com.example.libraryapi.service.LoanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -34,7 +47,8 @@ public class LoanController {
 
     private final LoanService service;
     private final BookService bookService;
-    private final ModelMapper modelMapper;
+    private final LoanMapper loanMapper;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -44,9 +58,9 @@ public class LoanController {
                 .orElseThrow(() ->
                         new ResponseStatusException(HttpStatus.BAD_REQUEST,"Book not found for passed ISBN"));
 
-        Loan entity = Loan.builder().book( bookByIsbn )
-                .customer(dto.getCustomer() )
-                .loanDate( LocalDate.now() ).build();
+        Loan entity = loanMapper.toEntity(dto);
+        entity.setBook( bookByIsbn );
+        entity.setLoanDate( LocalDate.now() );
 
         entity = service.save(entity);
 
@@ -54,33 +68,85 @@ public class LoanController {
 
     }
 
+    // If-Match com a versão do emprestimo -> 412 se ele mudou desde que o cliente o viu
     @PatchMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public void returnBook(  @PathVariable Long id, @RequestBody ReturnedLoanDTO dto  ){
+    public ResponseEntity<Void> returnBook(  @PathVariable Long id, @RequestBody ReturnedLoanDTO dto, WebRequest request  ){
 
         Loan loan = service.getById(id).orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        ETags.checkIfMatch(request, ETags.of(loan.getVersion()));
         loan.setReturned(dto.getReturned());
 
-        service.update(loan);
+        Loan updated = service.update(loan);
+        return ETags.ok(ETags.of(updated.getVersion())).build();
+    }
+
+    // devolução de um carrinho de livros -> um update para todos os ids
+    @PatchMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ReturnedLoansReportDTO returnBooks( @RequestBody @Valid ReturnedLoansDTO dto ){
+
+        Set<Long> requested = new LinkedHashSet<>(dto.getIds());
+        Set<Long> updated = service.updateReturned(requested, dto.getReturned())
+                .stream()
+                .map(Loan::getId)
+                .collect(Collectors.toSet());
+
+        ReturnedLoansReportDTO report = new ReturnedLoansReportDTO();
+        requested.forEach(id -> (updated.contains(id) ? report.getUpdated() : report.getNotFound()).add(id));
+        return report;
     }
 
     @GetMapping
-    public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest){
-        Page<Loan> result = service.find(dto, pageRequest);
+    public PageDTO<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest,
+                                 @RequestParam(defaultValue = "true") boolean count){
+        // count=false -> sem a query de count (que repete o join e o OR), só o hasNext
+        // já vem como LoanDTO (com o livro aninhado) da projeção no repository
+        Slice<LoanDTO> result = count
+                ? service.find(dto, pageRequest)
+                : service.findWithoutCount(dto, pageRequest);
+
+        return PageDTO.of(result, Function.identity());
+    }
+
+    // paginação por keyset (sem OFFSET e sem count) ordenada pela data do emprestimo
+    // primeira pagina -> ?after=&size=20 ; proximas -> ?after=<next da pagina anterior>
+    @GetMapping(params = "after")
+    public CursorPageDTO<LoanDTO> findAfter(LoanFilterDTO dto,
+                                            @RequestParam String after,
+                                            @RequestParam(defaultValue = "20") int size){
+
+        if (size < 1){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be greater than zero");
+        }
+
+        Slice<Loan> result = service.find(dto, after, size);
 
-        // de list<Loan> para list<LoanDTO>
         List<LoanDTO> loans = result.getContent()
                 .stream()
-                .map(entity -> {
-                    Book book = entity.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
+                .map(loanMapper::toDto)
+                .collect(Collectors.toList());
 
-                    LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
+        String next = result.hasNext()
+                ? KeysetCursor.of( result.getContent().get(result.getNumberOfElements() - 1) ).encode()
+                : null;
 
-                    loanDTO.setBook(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
+        return new CursorPageDTO<>(loans, size, result.hasNext(), next);
+    }
 
-        return new PageImpl<>(loans, pageRequest, result.getTotalElements());
+    // historico completo para os relatórios, sem paginar e sem count
+    // -> ?format=ndjson|csv&gzip=true
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = ExportWriter.NDJSON) String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip){
+
+        if (!ExportWriter.isSupported(format)){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        }
+
+        return ExportWriter.<LoanDTO>response("loans", format, gzip, objectMapper,
+                new String[]{"id", "isbn", "customer", "customerEmail", "loanDate", "returned"},
+                loan -> new Object[]{loan.getId(), loan.getIsbn(), loan.getCustomer(),
+                        loan.getCustomerEmail(), loan.getLoanDate(), loan.getReturned()},
+                writer -> service.exportLoans( loan -> writer.accept(loanMapper.toDto(loan)) ));
     }
 }
@@ -0,0 +1,49 @@
+package com.example.libraryapi.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class MailConfig {
+
+    public static final String LATE_LOANS_EXECUTOR = "lateLoansMailExecutor";
+    public static final String OUTBOX_EXECUTOR = "mailOutboxExecutor";
+
+    // envio paralelo dos avisos de atraso: poucas threads e fila limitada
+    // -> com a fila cheia quem envia eh a própria thread do job (CallerRuns),
+    // o que segura a leitura do próximo bloco ao invés de acumular mensagens
+    @Bean(LATE_LOANS_EXECUTOR)
+    public ThreadPoolTaskExecutor lateLoansMailExecutor(
+            @Value("${application.mail.lateloans.senders:4}") int senders,
+            @Value("${application.mail.lateloans.queue-capacity:100}") int queueCapacity) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(senders);
+        executor.setMaxPoolSize(senders);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("late-loans-mail-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    // threads que falam com o smtp para o MailOutboxWorker
+    // -> o worker nunca tem mais que max-in-flight emails entregues ao pool,
+    // então a fila não passa desse tamanho
+    @Bean(OUTBOX_EXECUTOR)
+    public ThreadPoolTaskExecutor mailOutboxExecutor(
+            @Value("${application.mail.outbox.workers:4}") int workers,
+            @Value("${application.mail.outbox.max-in-flight:20}") int maxInFlight) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(maxInFlight);
+        executor.setThreadNamePrefix("mail-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
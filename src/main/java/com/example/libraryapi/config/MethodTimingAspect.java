@@ -0,0 +1,89 @@
+package com.example.libraryapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+// timer com histograma de percentis em cada metodo dos services, repositories e mappers
+// -> library.method{layer, class, method, outcome, exception} em /actuator/metrics
+//    e com os buckets (_bucket) em /actuator/prometheus
+// -> separa o tempo de um /api/loans lento em query, mapeamento e o resto (serialização)
+@Aspect
+@Component
+public class MethodTimingAspect {
+
+    public static final String METRIC = "library.method";
+
+    private final MeterRegistry registry;
+
+    // timer de sucesso por classe + metodo -> evita montar as tags a cada chamada
+    // (mapper roda uma vez por linha da pagina / do export)
+    private final Map<Class<?>, Map<Method, Timer>> successTimers = new ConcurrentHashMap<>();
+
+    public MethodTimingAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(* com.example.libraryapi.service.BookService.*(..))"
+            + " || execution(* com.example.libraryapi.service.LoanService.*(..))"
+            + " || execution(* com.example.libraryapi.service.EmailService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "service");
+    }
+
+    // target -> pega também os metodos herdados do JpaRepository (findById, save...)
+    @Around("target(com.example.libraryapi.model.repository.BookRepository)"
+            + " || target(com.example.libraryapi.model.repository.LoanRepository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "repository");
+    }
+
+    @Around("execution(* com.example.libraryapi.api.mapper.BookMapper.*(..))"
+            + " || execution(* com.example.libraryapi.api.mapper.LoanMapper.*(..))")
+    public Object timeMapper(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "mapper");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Object result = joinPoint.proceed();
+            sample.stop(successTimers
+                    .computeIfAbsent(joinPoint.getTarget().getClass(), type -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(method, m -> timer(layer, joinPoint, "success", "none")));
+            return result;
+        } catch (Throwable e) {
+            sample.stop(timer(layer, joinPoint, "error", e.getClass().getSimpleName()));
+            throw e;
+        }
+    }
+
+    private Timer timer(String layer, ProceedingJoinPoint joinPoint, String outcome, String exception) {
+        return Timer.builder(METRIC)
+                .tag("layer", layer)
+                .tag("class", type(joinPoint))
+                .tag("method", joinPoint.getSignature().getName())
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // a interface da aplicação (BookRepository e não CrudRepository ou o proxy do spring data)
+    private static String type(ProceedingJoinPoint joinPoint) {
+        for (Class<?> type : joinPoint.getTarget().getClass().getInterfaces()) {
+            if (type.getName().startsWith("com.example.libraryapi.")) {
+                return type.getSimpleName();
+            }
+        }
+        return joinPoint.getSignature().getDeclaringType().getSimpleName();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.libraryapi.config;
+
+import java.time.Duration;
+import org.hibernate.stat.internal.StatisticsInitiator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// liga o SlowQueryStatistics no hibernate
+// (a coleta em si depende de spring.jpa.properties.hibernate.generate_statistics=true)
+@Configuration
+public class QueryStatisticsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer slowQueryStatistics(
+            @Value("${application.jpa.slow-query.threshold:200ms}") Duration threshold,
+            @Value("${application.jpa.slow-query.samples:100}") int samples) {
+
+        return properties -> properties.put(StatisticsInitiator.STATS_BUILDER,
+                SlowQueryStatistics.factory(threshold.toMillis(), samples));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.libraryapi.config;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
+import lombok.Value;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// GET    /actuator/querystats -> comandos sql, e por query (jpql/sql): execuções, tempo medio/maximo/total,
+//                                linhas, ordenado pelo tempo total; mais as ultimas execuções lentas
+// DELETE /actuator/querystats -> zera tudo (ex.: antes de um teste de carga, para medir só a janela dele)
+@Component
+@Endpoint(id = QueryStatisticsEndpoint.ID)
+public class QueryStatisticsEndpoint {
+
+    public static final String ID = "querystats";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public QueryStatisticsEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Report report() {
+        Statistics statistics = statistics();
+
+        List<QueryReport> queries = Arrays.stream(statistics.getQueries())
+                .map(query -> QueryReport.of(query, statistics.getQueryStatistics(query)))
+                .sorted(Comparator.comparingLong(QueryReport::getTotalTimeMillis).reversed())
+                .collect(Collectors.toList());
+
+        long threshold = -1;
+        List<SlowQueryStatistics.Sample> slowQueries = Collections.emptyList();
+        if (statistics instanceof SlowQueryStatistics) {
+            threshold = ((SlowQueryStatistics) statistics).getThresholdMillis();
+            slowQueries = ((SlowQueryStatistics) statistics).getSlowQueries();
+        }
+
+        return new Report(
+                statistics.isStatisticsEnabled(),
+                Instant.ofEpochMilli(statistics.getStartTime()),
+                statistics.getPrepareStatementCount(),
+                statistics.getQueryExecutionCount(),
+                statistics.getTransactionCount(),
+                threshold,
+                queries,
+                slowQueries);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Value
+    public static class Report {
+        boolean enabled;
+        Instant since;
+        // comandos sql preparados (inclui os gerados por find/save/lazy load, não só as queries)
+        long statements;
+        long queryExecutions;
+        long transactions;
+        long slowQueryThresholdMillis;
+        List<QueryReport> queries;
+        List<SlowQueryStatistics.Sample> slowQueries;
+    }
+
+    @Value
+    public static class QueryReport {
+        String query;
+        long executions;
+        long rows;
+        long meanTimeMillis;
+        long maxTimeMillis;
+        long totalTimeMillis;
+
+        static QueryReport of(String query, QueryStatistics statistics) {
+            return new QueryReport(query,
+                    statistics.getExecutionCount(),
+                    statistics.getExecutionRowCount(),
+                    statistics.getExecutionAvgTime(),
+                    statistics.getExecutionMaxTime(),
+                    statistics.getExecutionTotalTime());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.libraryapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// atraso do replica por heartbeat: a cada rodada grava o horário numa linha do primary
+// e lê a mesma linha no replica -> o atraso eh o quanto o valor do replica está para trás
+// replica sem o heartbeat, com erro ou atrasado mais que max-lag -> leituras voltam para o primary
+// (começa indisponível: até a primeira rodada dar certo tudo vai para o primary)
+@Slf4j
+public class ReplicaLagMonitor implements MeterBinder {
+
+    static final String TABLE = "replica_heartbeat";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    private boolean tableCreated;
+    private volatile Duration lag;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+    }
+
+    // MeterBinder e não o MeterRegistry no construtor: o registry já depende do DataSource (metricas do hikari)
+    // -> /actuator/metrics/library.datasource.replica.lag (NaN enquanto o replica não responde)
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.datasource.replica.lag", this,
+                        monitor -> monitor.lag == null ? Double.NaN : monitor.lag.toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.datasource.replica.poll-interval:1000}",
+            initialDelayString = "${application.datasource.replica.initial-delay:0}")
+    public synchronized void check() {
+        Instant now = Instant.now();
+        try {
+            beat(now);
+        } catch (DataAccessException e) {
+            // sem o primary não há o que comparar; as escritas vão falhar de qualquer jeito
+            log.warn("Could not write the replica heartbeat: {}", e.getMessage());
+            lag = null;
+            return;
+        }
+
+        try {
+            List<Timestamp> beats = replica.queryForList(
+                    "select beat_at from " + TABLE + " where id = 1", Timestamp.class);
+            lag = beats.isEmpty() ? null : Duration.between(beats.get(0).toInstant(), now);
+        } catch (DataAccessException e) {
+            log.warn("Replica is unreachable, reading from the primary: {}", e.getMessage());
+            lag = null;
+        }
+    }
+
+    private void beat(Instant now) {
+        if (!tableCreated) {
+            primary.execute("create table if not exists " + TABLE + " (id int primary key, beat_at timestamp not null)");
+            tableCreated = true;
+        }
+        Timestamp beatAt = Timestamp.from(now);
+        if (primary.update("update " + TABLE + " set beat_at = ? where id = 1", beatAt) == 0) {
+            primary.update("insert into " + TABLE + " (id, beat_at) values (1, ?)", beatAt);
+        }
+    }
+
+    public boolean isReplicaAvailable() {
+        Duration current = lag;
+        return current != null && current.compareTo(maxLag) <= 0;
+    }
+}
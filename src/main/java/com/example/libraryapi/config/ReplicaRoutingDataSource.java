@@ -0,0 +1,36 @@
+package com.example.libraryapi.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// escolhe o pool a cada conexão pedida: transação readOnly com o replica em dia -> replica,
+// o resto (escritas, sem transação, readOnly dentro de uma transação de escrita) -> primary
+// -> precisa ficar atrás do LazyConnectionDataSourceProxy: o JpaTransactionManager pede a
+// conexão antes de marcar a transação como readOnly no TransactionSynchronizationManager
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && lagMonitor.isReplicaAvailable()
+                ? Target.REPLICA
+                : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.libraryapi.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
+import lombok.Value;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// GET /actuator/l2cache -> por região do second-level cache (entidade e query cache):
+//                          hits, misses, puts, hitRatio e quantas entradas estão em memória
+// (zera junto com o DELETE /actuator/querystats, as estatisticas do hibernate são as mesmas)
+@Component
+@Endpoint(id = SecondLevelCacheEndpoint.ID)
+public class SecondLevelCacheEndpoint {
+
+    public static final String ID = "l2cache";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Report report() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<RegionReport> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> RegionReport.of(region, statistics.getCacheRegionStatistics(region)))
+                .collect(Collectors.toList());
+
+        return new Report(
+                statistics.isStatisticsEnabled(),
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                hitRatio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()),
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                hitRatio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()),
+                regions);
+    }
+
+    // null enquanto a região não recebeu nenhuma leitura
+    private static Double hitRatio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? null : (double) hits / requests;
+    }
+
+    @Value
+    public static class Report {
+        boolean enabled;
+        // leituras de entidades (todas as regiões de entidade)
+        long hits;
+        long misses;
+        Double hitRatio;
+        // resultados de query cacheavel
+        long queryHits;
+        long queryMisses;
+        Double queryHitRatio;
+        List<RegionReport> regions;
+    }
+
+    @Value
+    public static class RegionReport {
+        String region;
+        long hits;
+        long misses;
+        long puts;
+        Double hitRatio;
+        long elementsInMemory;
+
+        static RegionReport of(String region, CacheRegionStatistics statistics) {
+            if (statistics == null) {
+                return new RegionReport(region, 0, 0, 0, null, 0);
+            }
+            return new RegionReport(region,
+                    statistics.getHitCount(),
+                    statistics.getMissCount(),
+                    statistics.getPutCount(),
+                    hitRatio(statistics.getHitCount(), statistics.getMissCount()),
+                    statistics.getElementCountInMemory());
+        }
+    }
+}
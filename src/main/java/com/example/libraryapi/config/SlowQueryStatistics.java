@@ -0,0 +1,79 @@
+package com.example.libraryapi.config;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import lombok.Value;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+
+// estatisticas do hibernate + as ultimas execuções de query acima do limite
+// -> o hibernate já soma contagem, tempo medio/maximo e linhas por query;
+//    aqui guardamos também cada execução lenta (query, tempo, linhas, quando e em qual thread)
+public class SlowQueryStatistics extends StatisticsImpl {
+
+    private final long thresholdMillis;
+    private final int maxSamples;
+    private final Deque<Sample> samples;
+
+    public SlowQueryStatistics(SessionFactoryImplementor sessionFactory, long thresholdMillis, int maxSamples) {
+        super(sessionFactory);
+        this.thresholdMillis = thresholdMillis;
+        this.maxSamples = maxSamples;
+        this.samples = new ArrayDeque<>(maxSamples);
+    }
+
+    // registrado em hibernate.stats.factory pelo QueryStatisticsConfig
+    public static StatisticsFactory factory(long thresholdMillis, int maxSamples) {
+        return sessionFactory -> new SlowQueryStatistics(sessionFactory, thresholdMillis, maxSamples);
+    }
+
+    @Override
+    public void queryExecuted(String query, int rows, long time) {
+        super.queryExecuted(query, rows, time);
+
+        if (time >= thresholdMillis && maxSamples > 0) {
+            Sample sample = new Sample(query, time, rows, Instant.now(), Thread.currentThread().getName());
+            synchronized (samples) {
+                if (samples.size() == maxSamples) {
+                    samples.removeFirst();
+                }
+                samples.addLast(sample);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        synchronized (samples) {
+            samples.clear();
+        }
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    // da mais recente para a mais antiga
+    public List<Sample> getSlowQueries() {
+        synchronized (samples) {
+            List<Sample> result = new ArrayList<>(samples);
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+    @Value
+    public static class Sample {
+        String query;
+        long timeMillis;
+        int rows;
+        Instant executedAt;
+        String thread;
+    }
+}
@@ -2,20 +2,43 @@ package com.example.libraryapi.model.entity;
 
 import java.util.List;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@Table(
+        // isbn único -> o banco garante (sem o select de existsByIsbn antes do insert)
+        uniqueConstraints = @UniqueConstraint(name = Book.UK_ISBN, columnNames = "isbn"),
+        indexes = {
+                // paginação por keyset -> where (title, id) > (?, ?) order by title, id
+                @Index(name = "idx_book_title_id", columnList = "title, id")
+        })
+// second-level cache do hibernate (jcache/caffeine, regiões no application.conf)
+// READ_WRITE -> update e delete pelo hibernate atualizam/removem a entrada no commit;
+// o marcador do emprestimo (sql do BookRepositoryImpl) não passa pelo hibernate -> o
+// LoanServiceImpl tira do cache só os livros alterados, depois do commit
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
 public class Book {
 
+    public static final String UK_ISBN = "uk_book_isbn";
+
+    // regiões do second-level cache: livros por id e o resultado do findByIsbn
+    public static final String CACHE_REGION = "book";
+    public static final String ISBN_QUERY_REGION = "book-by-isbn";
+
+    // sequence com pooled (allocationSize) -> o hibernate consegue mandar os inserts
+    // em lote (com IDENTITY cada insert precisa ir sozinho para pegar o id)
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
@@ -27,6 +50,18 @@ public class Book {
     @Column
     private String isbn;
 
+    // emprestimo em aberto do livro (null = disponivel)
+    // mantido pelo LoanServiceImpl no empréstimo e na devolução
+    // -> saber se o livro está emprestado eh uma leitura pela PK
+    @Column(name = "active_loan_id")
+    private Long activeLoanId;
+
+    // lock otimista e ETag de /api/books/{id}
+    // -> os updates do marcador (BookRepositoryImpl) incrementam na mão (o @Version só vale pelo hibernate)
+    @Version
+    @Column
+    private Long version;
+
     //FETCHTYPE.LAZY -> QUANDO EU BUSCAR O LIVRO EU NÃO VOU BUSCCAR OS EMPRESTIMOS DE QUE ELE FAZ PARTE
     @OneToMany(mappedBy = "book", fetch = FetchType.LAZY)
     private List<Loan> loans;
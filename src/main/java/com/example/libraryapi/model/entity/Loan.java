@@ -2,27 +2,47 @@ package com.example.libraryapi.model.entity;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(indexes = {
+        // emprestimos de um livro (findDtoByBookId, join com book)
+        @Index(name = "idx_loan_id_book", columnList = "id_book"),
+        // filtro por customer (findByBookIsbnOrCustomer)
+        @Index(name = "idx_loan_customer", columnList = "customer"),
+        // emprestimos atrasados (loan_date <= ?) e paginação por keyset
+        // -> where (loan_date, id) > (?, ?) order by loan_date, id
+        @Index(name = "idx_loan_loan_date_id", columnList = "loanDate, id"),
+        // blocos do aviso de atrasados -> order by customer_email, id
+        @Index(name = "idx_loan_customer_email_id", columnList = "customerEmail, id")
+})
 public class Loan {
 
+    // sequence (e não identity) -> o id existe antes do insert, então o LoanServiceImpl.save
+    // reserva o livro com ele primeiro e o insert só vai para o banco no commit
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     @Column
     private Long id;
 
@@ -32,8 +52,10 @@ public class Loan {
     @Column
     private String customerEmail;
 
+    // LAZY -> cada consulta de emprestimos diz explicitamente se traz o livro junto
+    // (join fetch / entity graph no LoanRepository)
     @JoinColumn(name = "id_book")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Book book;
 
     @Column
@@ -42,4 +64,14 @@ public class Loan {
     @Column
     private Boolean returned;
 
+    // quando o cliente foi avisado do atraso (null = ainda não avisado)
+    // -> o aviso sai uma vez só, seja pelo OverdueLoanTracker ou pela conferência diária
+    @Column
+    private LocalDateTime overdueNotifiedAt;
+
+    // lock otimista (If-Match no PATCH) e ETag dos emprestimos de um livro
+    @Version
+    @Column
+    private Long version;
+
 }
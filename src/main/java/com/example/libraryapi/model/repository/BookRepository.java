@@ -1,17 +1,47 @@
 package com.example.libraryapi.model.repository;
 
+import com.example.libraryapi.api.dto.BookDTO;
 import com.example.libraryapi.model.entity.Book;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    // livros da pagina do indice de busca direto para o BookDTO
+    @Query(" select new com.example.libraryapi.api.dto.BookDTO(b.id, b.title, b.author, b.isbn, " +
+            "case when b.activeLoanId is null then true else false end) from Book b where b.id in :ids ")
+    List<BookDTO> findDtoByIdIn(@Param("ids") Collection<Long> ids);
 
 
     boolean existsByIsbn(String isbn);
 
     void delete(Book entity);
 
+    // query cache -> guarda só o id do livro por isbn; o livro vem da região da entidade
+    // (qualquer escrita na tabela book invalida os resultados guardados)
+    @QueryHints({
+            @QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"),
+            @QueryHint(name = org.hibernate.annotations.QueryHints.CACHE_REGION, value = Book.ISBN_QUERY_REGION)
+    })
     Optional<Book> findByIsbn(String isbn);
 
+    // isbns do lote que já estão cadastrados (importação em massa)
+    @Query(" select b.isbn from Book b where b.isbn in :isbns ")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    // ETag do livro sem carregar (nem mapear) a entidade
+    @Query(" select b.version from Book b where b.id = :id ")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // livro emprestado? -> leitura pela PK, não importa o tamanho do historico de emprestimos
+    boolean existsByIdAndActiveLoanIdIsNotNull(Long id);
+
 //    Book findBooksFetchLoan();
 }
@@ -0,0 +1,53 @@
+package com.example.libraryapi.model.repository;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.model.entity.Book;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+public interface BookRepositoryCustom {
+
+    // paginação por keyset: livros depois de (title, id) ordenados por title, id
+    // title/id nulos -> primeira pagina
+    Slice<Book> findAfter(Example<Book> example, String title, Long id, int size);
+
+    // leitura por Example direto para o BookDTO (sem entidades gerenciadas)
+    // o count só roda quando a pagina não diz sozinha o total
+    Page<BookDTO> findDtos(Example<Book> example, Pageable pageable);
+
+    // pagina por OFFSET sem o count -> busca size + 1 para saber se existe proxima pagina
+    Slice<BookDTO> findDtoSlice(Example<Book> example, Pageable pageable);
+
+    // insere os livros em lotes jdbc (hibernate.jdbc.batch_size) e limpa o contexto
+    // de persistencia no final -> a memória não cresce com o tamanho da importação
+    List<Book> saveInBatch(List<Book> books);
+
+    // leituras que podem vir do replica: usam o second-level cache, mas não guardam nele
+    // (CacheMode.GET) -> um livro atrasado do replica nunca entra no cache compartilhado
+    Optional<Book> findByIdWithoutCachePut(Long id);
+
+    Optional<Book> findByIsbnWithoutCachePut(String isbn);
+
+    // marcador do emprestimo em aberto (active_loan_id), sempre com a versão + 1 (ETag)
+    // 0 = o livro já tinha outro emprestimo em aberto (o mesmo loanId de novo não eh conflito)
+    int markActiveLoan(Long bookId, Long loanId);
+
+    // só limpa se o emprestimo devolvido for o que está em aberto no livro
+    int clearActiveLoan(Long bookId, Long loanId);
+
+    // devolução em lote -> libera de uma vez os livros cujo emprestimo em aberto foi devolvido
+    int clearActiveLoans(Collection<Long> bookIds, Collection<Long> loanIds);
+
+    // tira os livros do second-level cache -> quem muda o marcador chama depois do commit
+    void evictFromCache(Collection<Long> bookIds);
+
+    // percorre todos os livros (ordem de id) com um cursor forward-only do jdbc,
+    // desanexando cada entidade depois do action -> usado pela exportação
+    void streamAll(Consumer<Book> action);
+}
@@ -0,0 +1,237 @@
+package com.example.libraryapi.model.repository;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.model.entity.Book;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.persistence.Cache;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.hibernate.CacheMode;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+// implementação do fragmento BookRepositoryCustom (o spring data acha pelo sufixo Impl)
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    // linhas trazidas do banco por ida ao cursor durante a exportação
+    static final int STREAM_FETCH_SIZE = 500;
+
+    // query space dos updates do marcador: nenhuma região do second-level cache depende dele
+    // -> um update em lote (jpql ou sql sem query space) faz o hibernate invalidar a região
+    //    "book" inteira; com este espaço ele não invalida nada e o LoanServiceImpl tira do cache
+    //    só os livros que mudaram (evictFromCache, depois do commit)
+    static final String ACTIVE_LOAN_SPACE = "book_active_loan";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Book> findAfter(Example<Book> example, String title, Long id, int size) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+
+        Predicate where = QueryByExamplePredicateBuilder.getPredicate(root, cb, example, EscapeCharacter.DEFAULT);
+        if (where == null) {
+            where = cb.conjunction();
+        }
+
+        // (title, id) > (:title, :id) -> usa o indice (title, id) sem OFFSET
+        if (title != null && id != null) {
+            where = cb.and(where, cb.or(
+                    cb.greaterThan(root.get("title"), title),
+                    cb.and(cb.equal(root.get("title"), title), cb.greaterThan(root.get("id"), id))));
+        }
+
+        query.select(root)
+                .where(where)
+                .orderBy(cb.asc(root.get("title")), cb.asc(root.get("id")));
+
+        // busca um a mais só para saber se existe proxima pagina
+        // CacheMode.GET -> lido do replica, o livro pode estar atrasado: não entra no second-level cache
+        List<Book> books = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .setHint(QueryHints.CACHE_MODE, CacheMode.GET)
+                .getResultList();
+
+        boolean hasNext = books.size() > size;
+        List<Book> content = hasNext ? books.subList(0, size) : books;
+
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    public Page<BookDTO> findDtos(Example<Book> example, Pageable pageable) {
+        TypedQuery<BookDTO> query = dtoQuery(example, pageable);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+
+        // pagina incompleta (ou a primeira menor que o size) já diz o total
+        return PageableExecutionUtils.getPage(query.getResultList(), pageable, () -> count(example));
+    }
+
+    @Override
+    public Slice<BookDTO> findDtoSlice(Example<Book> example, Pageable pageable) {
+        TypedQuery<BookDTO> query = dtoQuery(example, pageable);
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.getResultList(), pageable, false);
+        }
+
+        List<BookDTO> books = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = books.size() > pageable.getPageSize();
+        List<BookDTO> content = hasNext ? books.subList(0, pageable.getPageSize()) : books;
+
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    // select new BookDTO(...) -> disponibilidade calculada no banco a partir do active_loan_id
+    private TypedQuery<BookDTO> dtoQuery(Example<Book> example, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDTO> query = cb.createQuery(BookDTO.class);
+        Root<Book> root = query.from(Book.class);
+
+        Expression<Boolean> available = cb.<Boolean>selectCase()
+                .when(cb.isNull(root.get("activeLoanId")), true)
+                .otherwise(false);
+
+        query.select(cb.construct(BookDTO.class,
+                        root.get("id"), root.get("title"), root.get("author"), root.get("isbn"), available))
+                .where(where(example, root, cb))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Example<Book> example) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+
+        query.select(cb.count(root)).where(where(example, root, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private Predicate where(Example<Book> example, Root<Book> root, CriteriaBuilder cb) {
+        Predicate where = QueryByExamplePredicateBuilder.getPredicate(root, cb, example, EscapeCharacter.DEFAULT);
+        return where == null ? cb.conjunction() : where;
+    }
+
+    @Override
+    @Transactional
+    public List<Book> saveInBatch(List<Book> books) {
+        books.forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+        return books;
+    }
+
+    @Override
+    public Optional<Book> findByIdWithoutCachePut(Long id) {
+        // storeMode BYPASS + retrieveMode USE (padrão) = CacheMode.GET no find
+        Map<String, Object> hints = Collections.singletonMap(AvailableSettings.JPA_SHARED_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+        return Optional.ofNullable(entityManager.find(Book.class, id, hints));
+    }
+
+    @Override
+    public Optional<Book> findByIsbnWithoutCachePut(String isbn) {
+        return entityManager.createQuery("select b from Book b where b.isbn = :isbn", Book.class)
+                .setParameter("isbn", isbn)
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, Book.ISBN_QUERY_REGION)
+                .setHint(QueryHints.CACHE_MODE, CacheMode.GET)
+                .getResultList()    // getResultStream vira scroll, que ignora o cache mode e o query cache
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional
+    public int markActiveLoan(Long bookId, Long loanId) {
+        return activeLoanUpdate("update book set active_loan_id = :loanId, version = version + 1 "
+                + "where id = :bookId and (active_loan_id is null or active_loan_id = :loanId)")
+                .setParameter("bookId", bookId)
+                .setParameter("loanId", loanId)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int clearActiveLoan(Long bookId, Long loanId) {
+        return activeLoanUpdate("update book set active_loan_id = null, version = version + 1 "
+                + "where id = :bookId and active_loan_id = :loanId")
+                .setParameter("bookId", bookId)
+                .setParameter("loanId", loanId)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int clearActiveLoans(Collection<Long> bookIds, Collection<Long> loanIds) {
+        // filtra pela pk: active_loan_id não tem indice, só com ele seria um scan da tabela book
+        return activeLoanUpdate("update book set active_loan_id = null, version = version + 1 "
+                + "where id in (:bookIds) and active_loan_id in (:loanIds)")
+                .setParameterList("bookIds", bookIds)
+                .setParameterList("loanIds", loanIds)
+                .executeUpdate();
+    }
+
+    private NativeQuery<?> activeLoanUpdate(String sql) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(ACTIVE_LOAN_SPACE);
+    }
+
+    @Override
+    public void evictFromCache(Collection<Long> bookIds) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        bookIds.forEach(id -> cache.evict(Book.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Book> action) {
+        // readOnly -> o hibernate não guarda snapshot para dirty checking
+        // CacheMode.IGNORE -> a exportação não empurra o catálogo inteiro para o second-level cache
+        try (Stream<Book> books = entityManager
+                .createQuery("select b from Book b order by b.id", Book.class)
+                .setHint(QueryHints.FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.CACHE_MODE, CacheMode.IGNORE)
+                .getResultStream()) {
+            books.forEach(book -> {
+                action.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+}
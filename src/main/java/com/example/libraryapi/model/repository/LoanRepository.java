@@ -1,36 +1,134 @@
 package com.example.libraryapi.model.repository;
 
-import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.model.entity.Loan;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
 
-    @Query(value = " select case when ( count(l.id) > 0 )" +
-            " then true else false end from Loan l" +
-            " where l.book = :book and ( l.returned is null or l.returned is false ) ")
-    boolean existsByBookAndNotReturned(@Param("book") Book book);
+    // leitura direto para o LoanDTO (livro junto, pelo join) -> sem entidades gerenciadas nem snapshot
+    String SELECT_LOAN_DTO = " select new com.example.libraryapi.api.dto.LoanDTO(" +
+            "l.id, l.customer, l.customerEmail, l.loanDate, l.returned, " +
+            "b.id, b.title, b.author, b.isbn, case when b.activeLoanId is null then true else false end) " +
+            "from Loan as l join l.book as b ";
 
-    @Query(value = " select l from Loan as l join l.book as b where b.isbn = :isbn " +
+    // join fetch -> o livro vem na mesma query (sem um select extra por emprestimo)
+    // a contagem fica numa query separada, pois não dá pra paginar/contar com fetch
+    @Query(value = " select l from Loan as l join fetch l.book as b where b.isbn = :isbn " +
+            "or l.customer = :customer ",
+            countQuery = " select count(l) from Loan as l join l.book as b where b.isbn = :isbn " +
             "or l.customer = :customer ")
     Page<Loan> findByBookIsbnOrCustomer(
             @Param("isbn") String isbn,
             @Param("customer") String customer,
             Pageable pageable);
 
-    Page<Loan> findByBook(Book book, Pageable pageable);
+    @Query(value = SELECT_LOAN_DTO + "where b.isbn = :isbn or l.customer = :customer ",
+            countQuery = " select count(l) from Loan as l join l.book as b where b.isbn = :isbn " +
+            "or l.customer = :customer ")
+    Page<LoanDTO> findDtoByBookIsbnOrCustomer(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    // mesma busca sem a query de count (com o join e o OR repetidos) -> o Slice busca size + 1
+    @Query(SELECT_LOAN_DTO + "where b.isbn = :isbn or l.customer = :customer ")
+    Slice<LoanDTO> findDtoSliceByBookIsbnOrCustomer(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    // paginação por keyset (sem OFFSET e sem count) ordenada por (loanDate, id)
+    // o Slice faz o spring data buscar size + 1 para saber se tem proxima pagina
+    // CacheMode.GET -> os livros lidos do replica (podem estar atrasados) não entram no second-level cache
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHE_MODE, value = "GET"))
+    @Query(" select l from Loan as l join fetch l.book as b " +
+            "where ( b.isbn = :isbn or l.customer = :customer ) " +
+            "order by l.loanDate, l.id ")
+    Slice<Loan> findFirstSliceByBookIsbnOrCustomer(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            Pageable pageable);
+
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHE_MODE, value = "GET"))
+    @Query(" select l from Loan as l join fetch l.book as b " +
+            "where ( b.isbn = :isbn or l.customer = :customer ) " +
+            "and ( l.loanDate > :loanDate or ( l.loanDate = :loanDate and l.id > :id ) ) " +
+            "order by l.loanDate, l.id ")
+    Slice<Loan> findSliceByBookIsbnOrCustomerAfter(
+            @Param("isbn") String isbn,
+            @Param("customer") String customer,
+            @Param("loanDate") LocalDate loanDate,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Query(value = SELECT_LOAN_DTO + "where b.id = :bookId ",
+            countQuery = " select count(l) from Loan as l where l.book.id = :bookId ")
+    Page<LoanDTO> findDtoByBookId(@Param("bookId") Long bookId, Pageable pageable);
+
+    // ETag de /api/books/{id}/loans numa linha só: a versão do livro (muda no emprestimo e na devolução),
+    // quantos emprestimos ele tem (muda no cadastro) e a soma das versões deles (muda em qualquer update)
+    @Query(" select b.version as bookVersion, count(l) as loans, coalesce(sum(l.version), 0) as loanVersions " +
+            "from Book b left join b.loans l where b.id = :bookId group by b.id, b.version ")
+    Optional<LoansVersion> findLoansVersionByBookId(@Param("bookId") Long bookId);
+
+    interface LoansVersion {
+        Long getBookVersion();
+        Long getLoans();
+        Long getLoanVersions();
+    }
+
+    // emprestimos atrasados ainda não avisados em blocos por keyset (customerEmail, id)
+    // -> os emprestimos do mesmo cliente chegam juntos e nenhum bloco precisa de OFFSET
+    // primeiro bloco -> email "" e id 0
+    @Query(" select l from Loan as l join fetch l.book " +
+            "where l.loanDate <= :loanDate and ( l.returned is null or l.returned is false ) " +
+            "and l.customerEmail is not null and l.overdueNotifiedAt is null " +
+            "and ( l.customerEmail > :email or ( l.customerEmail = :email and l.id > :id ) ) " +
+            "order by l.customerEmail, l.id ")
+    List<Loan> findLateLoansAfter(
+            @Param("loanDate") LocalDate loanDate,
+            @Param("email") String email,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    // emprestimos em aberto que ainda podem gerar aviso -> carregados no timing wheel na subida,
+    // em blocos por keyset (id) para não trazer todos numa lista só; primeiro bloco -> id 0
+    @Query(" select l from Loan as l join fetch l.book " +
+            "where ( l.returned is null or l.returned is false ) " +
+            "and l.customerEmail is not null and l.overdueNotifiedAt is null " +
+            "and l.id > :id order by l.id ")
+    List<Loan> findOpenLoansToNotifyAfter(@Param("id") Long id, Pageable pageable);
+
+    // marca o aviso de atraso só se o emprestimo continua em aberto e ainda não foi avisado
+    // -> 0 linhas = já devolvido ou já avisado (não manda de novo)
+    @Modifying
+    @Query(" update Loan l set l.overdueNotifiedAt = :now, l.version = l.version + 1 where l.id = :id " +
+            "and l.overdueNotifiedAt is null and ( l.returned is null or l.returned = false ) ")
+    int markOverdueNotified(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // devolução em lote: os emprestimos (com o livro) antes do update, para cache e timing wheel
+    @Query(" select l from Loan as l join fetch l.book where l.id in :ids ")
+    List<Loan> findAllWithBookByIdIn(@Param("ids") Collection<Long> ids);
 
-    // só traga os livros com data de emprestimo <= a tres dias atrás
-    // e que não foram devolvidos
-    @Query(" select l from Loan as l where l.loanDate <= :threeDaysAgo " +
-            "and ( l.returned is null or l.returned is false ) ")
-    List<Loan> findByLoanDateLessThanAndNotReturned(LocalDate threeDaysAgo);
+    // um único update para o lote inteiro
+    // -> clear: os emprestimos carregados antes ficam destacados e não voltam a ser gravados no commit
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Loan l set l.returned = :returned, l.version = l.version + 1 where l.id in :ids ")
+    int updateReturned(@Param("ids") Collection<Long> ids, @Param("returned") Boolean returned);
 }
@@ -0,0 +1,11 @@
+package com.example.libraryapi.model.repository;
+
+import com.example.libraryapi.model.entity.Loan;
+import java.util.function.Consumer;
+
+public interface LoanRepositoryCustom {
+
+    // percorre o historico inteiro de emprestimos (com o livro) por um cursor forward-only,
+    // desanexando emprestimo e livro depois do action -> usado pela exportação
+    void streamAll(Consumer<Loan> action);
+}
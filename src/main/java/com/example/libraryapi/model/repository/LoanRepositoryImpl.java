@@ -0,0 +1,35 @@
+package com.example.libraryapi.model.repository;
+
+import com.example.libraryapi.model.entity.Loan;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+// implementação do fragmento LoanRepositoryCustom
+public class LoanRepositoryImpl implements LoanRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Loan> action) {
+        try (Stream<Loan> loans = entityManager
+                .createQuery("select l from Loan l join fetch l.book order by l.id", Loan.class)
+                .setHint(QueryHints.FETCH_SIZE, BookRepositoryImpl.STREAM_FETCH_SIZE)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.CACHE_MODE, CacheMode.IGNORE)
+                .getResultStream()) {
+            loans.forEach(loan -> {
+                action.accept(loan);
+                // o livro não tem cascade a partir do emprestimo, então sai do contexto separado
+                entityManager.detach(loan.getBook());
+                entityManager.detach(loan);
+            });
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.libraryapi.model.repository;
+
+import com.example.libraryapi.model.entity.MailOutbox;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    // emails pendentes cuja hora da (próxima) tentativa já chegou, os mais antigos primeiro
+    @Query(" select m from MailOutbox m where m.status = :status and m.nextAttemptAt <= :now " +
+            "order by m.nextAttemptAt, m.id ")
+    List<MailOutbox> findDue(@Param("status") MailOutbox.Status status,
+                             @Param("now") LocalDateTime now,
+                             Pageable pageable);
+
+    // reserva o email: empurra a próxima tentativa para depois do envio em andamento, só se ele
+    // ainda estiver pendente e vencido -> 0 linhas = outro worker (ou outra instancia) leu o mesmo
+    // email no findDue e reservou antes; só quem atualizou 1 linha envia
+    @Transactional
+    @Modifying
+    @Query(" update MailOutbox m set m.nextAttemptAt = :until where m.id = :id " +
+            "and m.status = :status and m.nextAttemptAt <= :now ")
+    int lease(@Param("id") Long id,
+              @Param("status") MailOutbox.Status status,
+              @Param("now") LocalDateTime now,
+              @Param("until") LocalDateTime until);
+
+    long countByStatus(MailOutbox.Status status);
+}
@@ -0,0 +1,26 @@
+package com.example.libraryapi.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// estruturas em memória (timing wheel, indice de busca) só mudam depois do commit
+// -> se a transação for desfeita elas continuam iguais ao banco
+// -> sem transação ativa a ação roda na hora
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
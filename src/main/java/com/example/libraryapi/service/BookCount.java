@@ -0,0 +1,50 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.model.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// total do catálogo para a listagem sem filtro, sem count(*) por pagina
+// -> os cadastros, importações e exclusões desta instancia ajustam o total depois do commit
+//    (adjust), então quem grava já vê o total novo na listagem seguinte
+// -> o count(*) a cada refresh-interval só corrige: o que as outras instancias gravaram
+//    (o BookSearchIndex também é por instancia) e ajustes que se cruzaram com uma contagem
+@Slf4j
+@Component
+public class BookCount {
+
+    private final BookRepository repository;
+
+    // null até a primeira contagem -> o BookServiceImpl faz o count da pagina
+    private volatile Long total;
+
+    public BookCount(BookRepository repository) {
+        this.repository = repository;
+    }
+
+    @Scheduled(fixedDelayString = "${application.books.count.refresh-interval:60000}")
+    public void refresh() {
+        try {
+            long counted = repository.count();
+            synchronized (this) {
+                total = counted;
+            }
+        } catch (DataAccessException e) {
+            // fica o ultimo total; a listagem continua funcionando
+            log.warn("Could not count the books: {}", e.getMessage());
+        }
+    }
+
+    // antes da primeira contagem não há o que ajustar -> a contagem já vai incluir a escrita
+    public synchronized void adjust(long delta) {
+        if (total != null) {
+            total = Math.max(0, total + delta);
+        }
+    }
+
+    public Long get() {
+        return total;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.api.dto.BookImportReportDTO;
+import com.example.libraryapi.exception.BusinessException;
+import com.example.libraryapi.model.entity.Book;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+// importação em massa: recebe as linhas já lidas/validadas (BookController) e grava os livros
+// em lotes de chunkSize, uma transação por lote (BookService.importBooks)
+// -> memória constante: só o lote atual e as primeiras maxErrors linhas recusadas ficam guardados
+@Slf4j
+@Service
+public class BookImporter {
+
+    static final String DUPLICATED_IN_IMPORT = "Isbn repetido na importação.";
+    static final String DUPLICATED = "Isbn já cadastrado.";
+
+    private final BookService service;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public BookImporter(BookService service,
+                        @Value("${application.books.import.chunk-size:1000}") int chunkSize,
+                        @Value("${application.books.import.max-errors:1000}") int maxErrors) {
+        this.service = service;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    // uma linha do arquivo -> o livro ou os erros de leitura/validação
+    @Getter
+    @AllArgsConstructor
+    public static class Row {
+        private final long line;
+        private final Book book;
+        private final List<String> errors;
+    }
+
+    public BookImportReportDTO importBooks(Iterator<Row> rows) {
+        BookImportReportDTO report = new BookImportReportDTO();
+        Map<String, Row> chunk = new LinkedHashMap<>(); // isbn -> linha
+
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            report.setReceived(report.getReceived() + 1);
+
+            if (!row.getErrors().isEmpty()) {
+                reject(report, row, row.getErrors());
+                continue;
+            }
+            // repetido dentro do lote; entre lotes quem recusa eh a constraint única (isbn já cadastrado)
+            if (chunk.containsKey(row.getBook().getIsbn())) {
+                reject(report, row, Collections.singletonList(DUPLICATED_IN_IMPORT));
+                continue;
+            }
+
+            chunk.put(row.getBook().getIsbn(), row);
+            if (chunk.size() >= chunkSize) {
+                importChunk(chunk, report);
+            }
+        }
+        importChunk(chunk, report);
+
+        log.info("bulk import finished: {} received, {} imported, {} rejected",
+                report.getReceived(), report.getImported(), report.getRejected());
+        return report;
+    }
+
+    private void importChunk(Map<String, Row> chunk, BookImportReportDTO report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<Book> books = new ArrayList<>();
+        chunk.values().forEach(row -> books.add(row.getBook()));
+
+        try {
+            List<Book> rejected = service.importBooks(books);
+            rejected.forEach(book -> reject(report, chunk.get(book.getIsbn()), Collections.singletonList(DUPLICATED)));
+            report.setImported(report.getImported() + books.size() - rejected.size());
+        } catch (DataIntegrityViolationException e) {
+            // o lote foi desfeito (outro cliente cadastrou um desses isbns no meio do caminho,
+            // ou alguma outra constraint) -> livro a livro, cada um na sua transação
+            for (Row row : chunk.values()) {
+                importOne(row, report);
+            }
+        }
+
+        chunk.clear();
+    }
+
+    private void importOne(Row row, BookImportReportDTO report) {
+        Book book = row.getBook();
+        try {
+            book.setId(null);
+            service.save(book);
+            report.setImported(report.getImported() + 1);
+        } catch (BusinessException duplicated) {
+            reject(report, row, Collections.singletonList(DUPLICATED));
+        } catch (DataIntegrityViolationException e) {
+            // não eh o isbn: a linha fica no relatório e a importação segue (o que já entrou fica)
+            reject(report, row, Collections.singletonList("Livro recusado pelo banco: "
+                    + e.getMostSpecificCause().getMessage()));
+        }
+    }
+
+    // conta toda linha recusada, mas só guarda o detalhe das primeiras maxErrors
+    private void reject(BookImportReportDTO report, Row row, List<String> errors) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < maxErrors) {
+            String isbn = row.getBook() == null ? null : row.getBook().getIsbn();
+            report.getErrors().add(new BookImportReportDTO.RowError(row.getLine(), isbn, errors));
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.BookRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// indice de trigramas (3 letras seguidas) do titulo e do autor de todos os livros
+// -> "contém x" (ignorando maiusculas) vira a interseção das listas dos trigramas de x,
+//    conferida depois no texto -> não precisa varrer a tabela com lower(title) like '%x%'
+// -> termos com menos de 3 letras não tem trigrama e varrem os livros em memória
+// cada livro ganha um numero interno (doc) crescente, então as listas ficam ordenadas;
+// alterar ou remover um livro só marca o doc antigo como apagado
+// -> quando os apagados passam de 1/4 dos docs o indice é remontado só com os vivos
+//    (docs renumerados, listas sem os apagados) -> memória proporcional ao catálogo, não ao historico
+// -> carregado na subida com o catálogo inteiro e alimentado pelo BookServiceImpl (AfterCommit)
+// -> só vê o que esta instancia grava: com mais de uma instancia desligar
+//    (application.books.search-index.enabled=false) e a busca volta para o banco
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+
+    // abaixo disso não compensa remontar (catálogo pequeno, poucos updates)
+    private static final int MIN_TOMBSTONES = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<Long, Integer> docByBook = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    private final BookRepository repository;
+
+    @org.springframework.beans.factory.annotation.Value("${application.books.search-index.enabled:true}")
+    private boolean enabled = true;
+
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookRepository repository) {
+        this.repository = repository;
+    }
+
+    // cursor do banco -> não monta a lista do catálogo em memória
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            log.info("search index disabled, searching in the database");
+            return;
+        }
+        repository.streamAll(this::put);
+        markReady();
+        log.info("search index loaded with {} books", size());
+    }
+
+    // inclui ou substitui o livro
+    public void put(Book book) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDoc(book.getId());
+
+            Doc doc = new Doc(book.getId(), normalize(book.getTitle()), normalize(book.getAuthor()));
+            int docNo = docs.size();
+            docs.add(doc);
+            docByBook.put(book.getId(), docNo);
+
+            index(TITLE, doc.title, docNo);
+            index(AUTHOR, doc.author, docNo);
+
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeDoc(bookId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // carga inicial terminou -> o BookServiceImpl só usa o indice depois disso
+    public void markReady() {
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // livros cujo titulo contém title e cujo autor contém author (null = qualquer um),
+    // do mais relevante para o menos relevante -> devolve só a pagina pedida e o total
+    public Result search(String title, String author, long offset, int limit) {
+        String titleQuery = normalize(title);
+        String authorQuery = normalize(author);
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = intersect(
+                    candidates(TITLE, titleQuery),
+                    candidates(AUTHOR, authorQuery));
+
+            // só os offset + limit melhores ficam guardados: heap com o pior deles no topo
+            // -> custa ~ hits * log(offset + limit) em vez de ordenar todos os hits
+            TopHits top = new TopHits(offset + limit);
+            if (candidates == null) {
+                for (int docNo = 0; docNo < docs.size(); docNo++) {
+                    match(docNo, titleQuery, authorQuery, top);
+                }
+            } else {
+                for (int docNo : candidates) {
+                    match(docNo, titleQuery, authorQuery, top);
+                }
+            }
+
+            List<Hit> best = top.sorted();
+            List<Long> page = new ArrayList<>();
+            for (long i = offset; i < best.size() && page.size() < limit; i++) {
+                page.add(best.get((int) i).getBookId());
+            }
+            return new Result(page, top.total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByBook.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // tamanho interno (docs vivos + apagados ainda não compactados)
+    int capacity() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void match(int docNo, String titleQuery, String authorQuery, TopHits hits) {
+        Doc doc = docs.get(docNo);
+        if (doc == null) {
+            return;
+        }
+        int titleScore = score(doc.title, titleQuery);
+        int authorScore = score(doc.author, authorQuery);
+        if (titleScore < 0 || authorScore < 0) {
+            return;
+        }
+        // o titulo pesa mais que o autor
+        hits.add(new Hit(doc.bookId, 2 * titleScore + authorScore, doc.title.length()));
+    }
+
+    // -1 = não contém ; maior = mais relevante (igual > começa com > começo de palavra > meio)
+    private static int score(String text, String query) {
+        if (query == null) {
+            return 0;
+        }
+        int at = text.indexOf(query);
+        if (at < 0) {
+            return -1;
+        }
+        if (text.length() == query.length()) {
+            return 8;
+        }
+        if (at == 0) {
+            return 4;
+        }
+        if (!Character.isLetterOrDigit(text.charAt(at - 1))) {
+            return 2;
+        }
+        return 1;
+    }
+
+    // null = sem restrição por trigramas (campo sem filtro ou termo curto)
+    private int[] candidates(int field, String query) {
+        if (query == null || query.length() < 3) {
+            return null;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (long key : trigrams(field, query)) {
+            Postings list = postings.get(key);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+
+        // começa pela lista mais curta -> as interseções seguintes só encolhem
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] result = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, result.length, lists.get(i).docs, lists.get(i).size);
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return intersect(left, left.length, right, right.length);
+    }
+
+    // left é a lista curta: para cada doc dela, busca exponencial em right a partir da ultima posição
+    // -> custa ~ leftSize * log(rightSize), mesmo com right tendo quase o catálogo inteiro
+    private static int[] intersect(int[] left, int leftSize, int[] right, int rightSize) {
+        if (leftSize > rightSize) {
+            return intersect(right, rightSize, left, leftSize);
+        }
+        int[] result = new int[leftSize];
+        int size = 0;
+        int from = 0;
+        for (int i = 0; i < leftSize && from < rightSize; i++) {
+            int doc = left[i];
+
+            int bound = 1;
+            while (from + bound < rightSize && right[from + bound] < doc) {
+                bound <<= 1;
+            }
+            int at = Arrays.binarySearch(right, from + (bound >> 1), Math.min(from + bound + 1, rightSize), doc);
+            if (at >= 0) {
+                result[size++] = doc;
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void index(int field, String text, int docNo) {
+        for (long key : trigrams(field, text)) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(docNo);
+        }
+    }
+
+    private void removeDoc(Long bookId) {
+        Integer docNo = docByBook.remove(bookId);
+        if (docNo != null) {
+            docs.set(docNo, null);
+        }
+    }
+
+    // chamado com o write lock
+    private void compactIfNeeded() {
+        int tombstones = docs.size() - docByBook.size();
+        if (tombstones < MIN_TOMBSTONES || tombstones * 4 < docs.size()) {
+            return;
+        }
+
+        List<Doc> alive = new ArrayList<>(docByBook.size());
+        for (Doc doc : docs) {
+            if (doc != null) {
+                alive.add(doc);
+            }
+        }
+        docs.clear();
+        docByBook.clear();
+        postings.clear();
+
+        // mesma ordem de antes -> as listas continuam crescentes
+        for (Doc doc : alive) {
+            int docNo = docs.size();
+            docs.add(doc);
+            docByBook.put(doc.bookId, docNo);
+            index(TITLE, doc.title, docNo);
+            index(AUTHOR, doc.author, docNo);
+        }
+        log.debug("search index compacted: {} deleted docs dropped, {} books", tombstones, alive.size());
+    }
+
+    // trigramas distintos do texto, com o campo na chave (titulo e autor não se misturam)
+    private static long[] trigrams(int field, String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] keys = new long[text.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) field << 48)
+                    | ((long) text.charAt(i) << 32)
+                    | ((long) text.charAt(i + 1) << 16)
+                    | text.charAt(i + 2);
+        }
+        return Arrays.stream(keys).distinct().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    @Value
+    public static class Result {
+        List<Long> bookIds;
+        long total;
+    }
+
+    @Value
+    private static class Hit {
+        long bookId;
+        int score;
+        int length;
+    }
+
+    // os limit melhores hits vistos até agora + o total de hits
+    private static final class TopHits {
+        // melhor primeiro: maior score, depois titulo mais curto, depois id
+        private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::getScore).reversed()
+                .thenComparingInt(Hit::getLength)
+                .thenComparingLong(Hit::getBookId);
+
+        private final long limit;
+        // ordem invertida -> o pior dos guardados no topo, é ele que sai quando chega um melhor
+        private final PriorityQueue<Hit> heap = new PriorityQueue<>(RANKING.reversed());
+        private long total;
+
+        private TopHits(long limit) {
+            this.limit = limit;
+        }
+
+        private void add(Hit hit) {
+            total++;
+            if (heap.size() < limit) {
+                heap.add(hit);
+            } else if (limit > 0 && RANKING.compare(hit, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+
+        private List<Hit> sorted() {
+            List<Hit> hits = new ArrayList<>(heap);
+            hits.sort(RANKING);
+            return hits;
+        }
+    }
+
+    private static final class Doc {
+        private final long bookId;
+        private final String title;
+        private final String author;
+
+        private Doc(long bookId, String title, String author) {
+            this.bookId = bookId;
+            this.title = title == null ? "" : title;
+            this.author = author == null ? "" : author;
+        }
+    }
+
+    // lista crescente de docs que tem o trigrama
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        private void add(int docNo) {
+            if (size > 0 && docs[size - 1] == docNo) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = docNo;
+        }
+    }
+}
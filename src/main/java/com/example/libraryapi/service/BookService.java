@@ -1,21 +1,45 @@
 package com.example.libraryapi.service;
 
+import com.example.libraryapi.api.dto.BookDTO;
 import com.example.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
     Object save(Book any);
 
+    // leitura (pode vir do replica, atrasada) -> o ETag da resposta sai da versão do próprio livro
     Optional<Book> getById(Long id);
 
+    // sempre do primary -> o livro que o PUT/DELETE confere (If-Match) e grava
+    Optional<Book> getByIdForUpdate(Long id);
+
+    // só a versão (ETag), sempre do primary -> responde If-None-Match sem buscar o livro
+    Optional<Long> getVersion(Long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
-    Page<Book> find(  Book any, Pageable pageRequest  );
+    // listagens já saem como BookDTO (projeção), sem carregar as entidades
+    Page<BookDTO> find(  Book any, Pageable pageRequest  );
+
+    // pagina sem total (hasNext pelo size + 1) -> para quem não precisa do count
+    Slice<BookDTO> findWithoutCount( Book filter, Pageable pageRequest );
+
+    // paginação por keyset -> after eh o token do KeysetCursor (vazio = primeira pagina)
+    Slice<Book> find(  Book filter, String after, int size  );
 
     Optional<Book> getBookByIsbn(String isbn);
+
+    // importação em massa de um lote -> devolve os livros recusados por isbn já cadastrado
+    List<Book> importBooks(List<Book> books);
+
+    // exportação: entrega os livros um a um, sem carregar a tabela inteira na memória
+    void exportBooks(Consumer<Book> consumer);
 }
@@ -0,0 +1,14 @@
+package com.example.libraryapi.service;
+
+import java.util.List;
+import lombok.Value;
+
+// publicado pelo OverdueLoanTracker a cada tick: os vencimentos do tick agrupados por cliente
+// -> os prazos caem todos na mesma meia-noite, então um cliente com vários emprestimos
+//    do mesmo dia recebe um email só
+@Value
+public class CustomerLoansOverdueEvent {
+
+    String customerEmail;
+    List<LoanOverdueEvent> loans;
+}
@@ -8,4 +8,7 @@ public interface EmailService {
     // o mais simples eh o mailtrap (para aplicações em desenvolvimento)
 
     void sendMails(String message, List<String> allEmails);
+
+    // uma mensagem por destinatário (o servidor smtp limita a quantidade de destinatários)
+    void sendMail(String to, String message);
 }
@@ -0,0 +1,51 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.exception.BusinessException;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// cursor da paginação por keyset (seek): chave de ordenação + id do último item da pagina
+// vai pro cliente como um token opaco (base64) no parametro "after"
+@Getter
+@AllArgsConstructor
+public class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final String key;
+    private final Long id;
+
+    // livros são percorridos por (title, id)
+    public static KeysetCursor of(Book book) {
+        return new KeysetCursor(book.getTitle(), book.getId());
+    }
+
+    // emprestimos são percorridos por (loanDate, id)
+    public static KeysetCursor of(Loan loan) {
+        return new KeysetCursor(loan.getLoanDate().toString(), loan.getId());
+    }
+
+    public String encode() {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // token vazio ou nulo -> primeira pagina (retorna null)
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new KeysetCursor(raw.substring(0, separator), Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BusinessException("Invalid cursor.");
+        }
+    }
+}
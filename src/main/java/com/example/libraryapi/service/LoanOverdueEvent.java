@@ -0,0 +1,26 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.model.entity.Loan;
+import java.time.LocalDate;
+import lombok.Value;
+
+// publicado pelo OverdueLoanTracker quando o prazo de um emprestimo vence
+// -> só o necessario para o aviso, assim o timing wheel não segura entidades
+@Value
+public class LoanOverdueEvent {
+
+    Long loanId;
+    String customerEmail;
+    String bookTitle;
+    String isbn;
+    LocalDate loanDate;
+
+    public static LoanOverdueEvent of(Loan loan) {
+        return new LoanOverdueEvent(
+                loan.getId(),
+                loan.getCustomerEmail(),
+                loan.getBook().getTitle(),
+                loan.getBook().getIsbn(),
+                loan.getLoanDate());
+    }
+}
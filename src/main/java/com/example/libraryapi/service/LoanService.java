@@ -1,23 +1,50 @@
 package com.example.libraryapi.service;
 
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.api.dto.LoanFilterDTO;
-import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface LoanService {
+
+    // dias de emprestimo -> no dia loanDate + LOAN_DAYS o emprestimo passa a estar atrasado
+    int LOAN_DAYS = 4;
+
     Loan save(Loan loan);
 
     Optional<Loan> getById(Long id);
 
     Loan update(Loan loan);
 
-    Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
+    // devolução (ou reabertura) de vários emprestimos com um update só
+    // -> devolve os emprestimos encontrados; ids inexistentes ficam de fora
+    List<Loan> updateReturned(Collection<Long> ids, Boolean returned);
+
+    // listagens já saem como LoanDTO (projeção), sem carregar as entidades
+    Page<LoanDTO> find(LoanFilterDTO filterDTO, Pageable pageable);
+
+    // pagina sem total (hasNext pelo size + 1) -> para quem não precisa do count
+    Slice<LoanDTO> findWithoutCount(LoanFilterDTO filterDTO, Pageable pageable);
+
+    // paginação por keyset -> after eh o token do KeysetCursor (vazio = primeira pagina)
+    Slice<Loan> find(LoanFilterDTO filterDTO, String after, int size);
+
+    // pagina com a versão (ETag) dela, pode vir do replica -> vazio se o livro não existe
+    Optional<LoansByBook> getLoansByBook(Long bookId, Pageable pageable);
+
+    // versão dos emprestimos de um livro (ETag), sempre do primary -> vazio se o livro não existe
+    Optional<LoanRepository.LoansVersion> getLoansByBookVersion(Long bookId);
 
-    Page<Loan> getLoansByBook(Book book, Pageable pageable);
+    // um bloco de atrasados ainda não avisados depois de (afterEmail, afterId), ordenado por email do cliente
+    List<Loan> getLateLoans(String afterEmail, Long afterId, int size);
 
-    List<Loan> getAllLateLoans();
+    // exportação do historico inteiro, um emprestimo por vez (com o livro)
+    void exportLoans(Consumer<Loan> consumer);
 }
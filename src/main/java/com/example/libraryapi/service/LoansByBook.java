@@ -0,0 +1,16 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.example.libraryapi.model.repository.LoanRepository;
+import lombok.Value;
+import org.springframework.data.domain.Page;
+
+// pagina dos emprestimos de um livro com a versão (ETag) lida antes dela, na mesma transação
+// -> as duas do mesmo banco: com um replica atrasado o ETag pode ser antigo, mas nunca mais
+//    novo que a pagina (o cliente não guarda conteudo antigo com o ETag atual)
+@Value
+public class LoansByBook {
+
+    LoanRepository.LoansVersion version;
+    Page<LoanDTO> page;
+}
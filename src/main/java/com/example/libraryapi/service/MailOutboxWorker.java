@@ -0,0 +1,148 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.config.MailConfig;
+import com.example.libraryapi.model.entity.MailOutbox;
+import com.example.libraryapi.model.repository.MailOutboxRepository;
+import com.example.libraryapi.service.impl.EmailServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// esvazia a tabela mail_outbox: a cada rodada pega só o que cabe no limite de envios
+// em andamento (max-in-flight) e entrega para o pool de envio
+// -> falha: nova tentativa com espera exponencial (backoff, 2x backoff, 4x...)
+// -> esgotou as tentativas: status DEAD
+@Slf4j
+@Service
+public class MailOutboxWorker {
+
+    private final MailOutboxRepository repository;
+    private final EmailService smtp;
+    private final Executor executor;
+
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // metricas em /actuator/metrics/library.mail.outbox.*
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter deadCounter;
+
+    public MailOutboxWorker(MailOutboxRepository repository,
+                            @Qualifier(EmailServiceImpl.SMTP) EmailService smtp,
+                            @Qualifier(MailConfig.OUTBOX_EXECUTOR) Executor executor,
+                            MeterRegistry meterRegistry,
+                            @Value("${application.mail.outbox.max-in-flight:20}") int maxInFlight,
+                            @Value("${application.mail.outbox.max-attempts:5}") int maxAttempts,
+                            @Value("${application.mail.outbox.backoff:30s}") Duration backoff,
+                            @Value("${application.mail.outbox.max-backoff:1h}") Duration maxBackoff,
+                            @Value("${application.mail.outbox.lease:5m}") Duration lease) {
+        this.repository = repository;
+        this.smtp = smtp;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+
+        Gauge.builder("library.mail.outbox.depth", repository, r -> r.countByStatus(MailOutbox.Status.PENDING))
+                .tag("status", "pending")
+                .register(meterRegistry);
+        Gauge.builder("library.mail.outbox.depth", repository, r -> r.countByStatus(MailOutbox.Status.DEAD))
+                .tag("status", "dead")
+                .register(meterRegistry);
+        Gauge.builder("library.mail.outbox.in-flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+
+        this.sendTimer = meterRegistry.timer("library.mail.outbox.send");
+        this.sentCounter = meterRegistry.counter("library.mail.outbox.sent");
+        this.retryCounter = meterRegistry.counter("library.mail.outbox.retries");
+        this.deadCounter = meterRegistry.counter("library.mail.outbox.dead");
+    }
+
+    @Scheduled(fixedDelayString = "${application.mail.outbox.poll-interval:1000}",
+            initialDelayString = "${application.mail.outbox.initial-delay:1000}")
+    public void drain() {
+        int capacity = maxInFlight - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<MailOutbox> due = repository.findDue(MailOutbox.Status.PENDING, now, PageRequest.of(0, capacity));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        // um update por email (no maximo max-in-flight por rodada) -> sabe exatamente quais reservou
+        List<MailOutbox> leased = due.stream()
+                .filter(mail -> repository.lease(mail.getId(), MailOutbox.Status.PENDING, now, now.plus(lease)) == 1)
+                .collect(Collectors.toList());
+
+        for (MailOutbox mail : leased) {
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    deliver(mail);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void deliver(MailOutbox mail) {
+        mail.setAttempts(mail.getAttempts() + 1);
+        try {
+            sendTimer.record(() -> smtp.sendMail(mail.getRecipient(), mail.getMessage()));
+
+            mail.setStatus(MailOutbox.Status.SENT);
+            mail.setSentAt(LocalDateTime.now());
+            mail.setLastError(null);
+            sentCounter.increment();
+        } catch (RuntimeException e) {
+            mail.setLastError(truncate(e.toString()));
+
+            if (mail.getAttempts() >= maxAttempts) {
+                mail.setStatus(MailOutbox.Status.DEAD);
+                deadCounter.increment();
+                log.warn("mail {} to {} dead after {} attempts: {}",
+                        mail.getId(), mail.getRecipient(), mail.getAttempts(), e.getMessage());
+            } else {
+                mail.setNextAttemptAt(LocalDateTime.now().plus(backoff(mail.getAttempts())));
+                retryCounter.increment();
+            }
+        }
+        repository.save(mail);
+    }
+
+    // backoff * 2^(tentativas - 1), limitado em max-backoff
+    Duration backoff(int attempts) {
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private static String truncate(String error) {
+        return error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// avisa um cliente dos emprestimos atrasados dele (todos do mesmo email)
+// -> marca os emprestimos como avisados e grava o email no outbox na mesma transação
+// -> emprestimo já devolvido ou já avisado fica de fora
+@Service
+@RequiredArgsConstructor
+public class OverdueLoanNotifier {
+
+    @Value("${application.mail.lateloans.message}")
+    private String message;
+
+    private final LoanRepository repository;
+
+    private final EmailService emailService;
+
+    // devolve quantos emprestimos entraram no aviso (0 = nenhum email)
+    @Transactional
+    public int notify(List<LoanOverdueEvent> loans) {
+        LocalDateTime now = LocalDateTime.now();
+
+        List<LoanOverdueEvent> pending = loans.stream()
+                .filter(loan -> repository.markOverdueNotified(loan.getLoanId(), now) == 1)
+                .collect(Collectors.toList());
+
+        if (!pending.isEmpty()) {
+            emailService.sendMail(pending.get(0).getCustomerEmail(), messageFor(pending));
+        }
+        return pending.size();
+    }
+
+    private String messageFor(List<LoanOverdueEvent> loans) {
+        StringBuilder text = new StringBuilder(message).append("\n");
+        for (LoanOverdueEvent loan : loans) {
+            text.append("\n- ")
+                    .append(loan.getBookTitle())
+                    .append(" (isbn ").append(loan.getIsbn()).append(")")
+                    .append(", emprestado em ").append(loan.getLoanDate());
+        }
+        return text.toString();
+    }
+}
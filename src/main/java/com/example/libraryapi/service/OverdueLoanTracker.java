@@ -0,0 +1,109 @@
+package com.example.libraryapi.service;
+
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// acompanha o prazo de cada emprestimo em aberto num timing wheel em memória
+// -> carregado na subida com os emprestimos em aberto ainda não avisados
+// -> alimentado pelo LoanServiceImpl no emprestimo e na devolução (AfterCommit)
+// -> a cada segundo publica os prazos que venceram, um CustomerLoansOverdueEvent por cliente
+@Slf4j
+@Service
+public class OverdueLoanTracker {
+
+    private static final long TICK_MILLIS = 1000;
+
+    // 60 x 1s, 60 x 1min, 24 x 1h, 512 x 1dia
+    private static final int[] WHEEL_SIZES = {60, 60, 24, 512};
+
+    private final LoanRepository repository;
+    private final ApplicationEventPublisher publisher;
+    private final TimingWheel<Long, LoanOverdueEvent> wheel;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // quantos emprestimos por consulta na carga da subida
+    @Value("${application.mail.lateloans.chunk-size:500}")
+    private int chunkSize;
+
+    public OverdueLoanTracker(LoanRepository repository, ApplicationEventPublisher publisher) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.wheel = new TimingWheel<>(System.currentTimeMillis(), TICK_MILLIS, WHEEL_SIZES);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        // o wheel só guarda o LoanOverdueEvent -> na memória fica um bloco de entidades por vez
+        List<Loan> chunk;
+        Long lastId = 0L;
+        do {
+            chunk = repository.findOpenLoansToNotifyAfter(lastId, PageRequest.of(0, chunkSize));
+            chunk.forEach(this::schedule);
+            if (!chunk.isEmpty()) {
+                lastId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == chunkSize);
+
+        log.info("tracking {} open loans for overdue notices", wheel.size());
+    }
+
+    // em aberto -> agenda para loanDate + LOAN_DAYS ; devolvido -> sai do wheel
+    public void track(Loan loan) {
+        boolean open = !Boolean.TRUE.equals(loan.getReturned())
+                && loan.getCustomerEmail() != null
+                && loan.getOverdueNotifiedAt() == null;
+
+        if (open) {
+            LoanOverdueEvent event = LoanOverdueEvent.of(loan);
+            long deadline = deadline(loan);
+            AfterCommit.run(() -> wheel.schedule(event.getLoanId(), event, deadline));
+        } else {
+            Long id = loan.getId();
+            AfterCommit.run(() -> wheel.cancel(id));
+        }
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void tick() {
+        tick(System.currentTimeMillis());
+    }
+
+    void tick(long now) {
+        List<LoanOverdueEvent> expired = wheel.advance(now);
+        if (expired.isEmpty()) {
+            return;
+        }
+        expired.stream()
+                .collect(Collectors.groupingBy(LoanOverdueEvent::getCustomerEmail, LinkedHashMap::new, Collectors.toList()))
+                .forEach((email, loans) -> publisher.publishEvent(new CustomerLoansOverdueEvent(email, loans)));
+    }
+
+    int size() {
+        return wheel.size();
+    }
+
+    private void schedule(Loan loan) {
+        wheel.schedule(loan.getId(), LoanOverdueEvent.of(loan), deadline(loan));
+    }
+
+    // inicio do dia em que o emprestimo passa a estar atrasado
+    private long deadline(Loan loan) {
+        return loan.getLoanDate()
+                .plusDays(LoanService.LOAN_DAYS)
+                .atStartOfDay(zone)
+                .toInstant()
+                .toEpochMilli();
+    }
+}
@@ -1,40 +1,128 @@
 package com.example.libraryapi.service;
 
+import com.example.libraryapi.config.MailConfig;
 import com.example.libraryapi.model.entity.Loan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 
 //Criando o serviço que irá enviar os emails scheduled
+// -> o aviso normal sai na hora em que o prazo vence (CustomerLoansOverdueEvent do OverdueLoanTracker)
+// -> o job diário só confere se algum atrasado ficou sem aviso (ex.: aplicação fora do ar no vencimento)
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class ScheduleService {
 
     // http://www.cronmaker.com/ -> facilita criar a expressão
     // NESSE CASO VAI RODAR DIARIAMENTE A QUALQUER MES E A QUALQUER ANO
     private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
 
-    @Value("${application.mail.lateloans.message}")
-    private String message;
+    // quantos emprestimos atrasados por consulta
+    @Value("${application.mail.lateloans.chunk-size:500}")
+    private int chunkSize;
 
     private final LoanService loanService;
 
-    private final EmailService emailService;
+    private final OverdueLoanNotifier notifier;
 
+    private final Executor mailExecutor;
+
+    // metricas em /actuator/metrics/library.lateloans.*
+    private final Counter loansCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Timer jobTimer;
+
+    public ScheduleService(LoanService loanService,
+                           OverdueLoanNotifier notifier,
+                           @Qualifier(MailConfig.LATE_LOANS_EXECUTOR) Executor mailExecutor,
+                           MeterRegistry meterRegistry) {
+        this.loanService = loanService;
+        this.notifier = notifier;
+        this.mailExecutor = mailExecutor;
+        this.loansCounter = meterRegistry.counter("library.lateloans.loans");
+        this.sentCounter = meterRegistry.counter("library.lateloans.mails", "result", "sent");
+        this.failedCounter = meterRegistry.counter("library.lateloans.mails", "result", "failed");
+        this.jobTimer = meterRegistry.timer("library.lateloans.job");
+    }
+
+    // todos os emprestimos do cliente que venceram no mesmo tick -> um email
+    @EventListener
+    public void onLoansOverdue(CustomerLoansOverdueEvent event) {
+        loansCounter.increment(event.getLoans().size());
+        send(event.getLoans());
+    }
+
+    // percorre os atrasados ainda não avisados em blocos ordenados por email e manda um email por cliente
+    // -> os emprestimos de um cliente que ficam no fim de um bloco esperam o próximo bloco
     @Scheduled(cron = CRON_LATE_LOANS)
     public void SendMailToLateLoans(){
+        jobTimer.record(() -> {
+            List<Loan> customerLoans = new ArrayList<>();
+            String lastEmail = "";
+            Long lastId = 0L;
+
+            List<Loan> chunk;
+            do {
+                chunk = loanService.getLateLoans(lastEmail, lastId, chunkSize);
+                loansCounter.increment(chunk.size());
 
-        List<Loan> allLateLoans = loanService.getAllLateLoans();
+                List<CompletableFuture<Void>> sending = new ArrayList<>();
+                for (Loan loan : chunk) {
+                    if (!customerLoans.isEmpty()
+                            && !customerLoans.get(0).getCustomerEmail().equals(loan.getCustomerEmail())) {
+                        sending.add(sendAsync(customerLoans));
+                        customerLoans = new ArrayList<>();
+                    }
+                    customerLoans.add(loan);
+                }
 
-        List<String> allEmails = allLateLoans.stream()
-                .map(loan -> loan.getCustomerEmail())
+                // espera o bloco terminar antes de buscar o próximo -> memória limitada a um bloco
+                CompletableFuture.allOf(sending.toArray(new CompletableFuture[0])).join();
+
+                if (!chunk.isEmpty()) {
+                    Loan last = chunk.get(chunk.size() - 1);
+                    lastEmail = last.getCustomerEmail();
+                    lastId = last.getId();
+                }
+            } while (chunk.size() == chunkSize);
+
+            if (!customerLoans.isEmpty()) {
+                sendAsync(customerLoans).join();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> sendAsync(List<Loan> loans) {
+        List<LoanOverdueEvent> events = loans.stream()
+                .map(LoanOverdueEvent::of)
                 .collect(Collectors.toList());
 
-        emailService.sendMails(message, allEmails);
+        return CompletableFuture.runAsync(() -> send(events), mailExecutor);
+    }
+
+    private void send(List<LoanOverdueEvent> loans) {
+        String to = loans.get(0).getCustomerEmail();
+        try {
+            if (notifier.notify(loans) > 0) {
+                sentCounter.increment();
+            }
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.warn("could not send late loan mail to {}: {}", to, e.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,157 @@
+package com.example.libraryapi.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// timing wheel hierarquico: cada nivel eh um vetor de baldes, e um balde cobre um tick do nivel
+// -> nivel 0 com tick de 1s, nivel 1 com tick = uma volta do nivel 0, e assim por diante
+// -> agendar e cancelar custa O(1) (entra/sai de um balde e do mapa por chave)
+// -> a cada tick do nivel 0 os prazos do balde que acabou disparam e, quando um nivel
+//    superior começa um novo balde, as entradas dele descem para os niveis de baixo
+// prazos além da ultima volta do nivel mais alto ficam no overflow e são reavaliados
+// a cada tick desse nivel
+public class TimingWheel<K, V> {
+
+    private final long[] ticks;
+    private final Set<Entry<K, V>>[][] buckets;
+
+    private final Set<Entry<K, V>> expired = new LinkedHashSet<>();
+    private final Set<Entry<K, V>> overflow = new LinkedHashSet<>();
+    private final Map<K, Entry<K, V>> entries = new HashMap<>();
+
+    // inicio do tick atual do nivel 0 (millis)
+    private long current;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long startMillis, long tickMillis, int... wheelSizes) {
+        this.ticks = new long[wheelSizes.length];
+        this.buckets = new Set[wheelSizes.length][];
+
+        long tick = tickMillis;
+        for (int level = 0; level < wheelSizes.length; level++) {
+            ticks[level] = tick;
+            buckets[level] = new Set[wheelSizes[level]];
+            for (int slot = 0; slot < wheelSizes[level]; slot++) {
+                buckets[level][slot] = new LinkedHashSet<>();
+            }
+            tick *= wheelSizes[level];
+        }
+
+        this.current = startMillis - startMillis % tickMillis;
+    }
+
+    // agenda (ou reagenda) o valor da chave para disparar no prazo
+    // -> prazo no passado dispara no próximo advance
+    public synchronized void schedule(K key, V value, long deadlineMillis) {
+        cancel(key);
+
+        Entry<K, V> entry = new Entry<>(key, value, deadlineMillis);
+        entries.put(key, entry);
+        place(entry);
+    }
+
+    public synchronized boolean cancel(K key) {
+        Entry<K, V> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.bucket.remove(entry);
+        return true;
+    }
+
+    // anda o relógio até now e devolve os valores cujo prazo passou
+    public synchronized List<V> advance(long nowMillis) {
+        List<V> due = new ArrayList<>();
+        fire(expired, due);
+
+        while (current + ticks[0] <= nowMillis) {
+            long finished = current;
+            current += ticks[0];
+
+            // o balde do tick que acabou: todos os prazos dele são < current
+            fire(buckets[0][slot(0, finished)], due);
+
+            for (int level = 1; level < ticks.length; level++) {
+                if (current % ticks[level] == 0) {
+                    cascade(buckets[level][slot(level, current)]);
+                }
+            }
+
+            if (current % ticks[ticks.length - 1] == 0) {
+                cascade(overflow);
+            }
+
+            fire(expired, due);
+        }
+
+        return due;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void place(Entry<K, V> entry) {
+        if (entry.deadline < current) {
+            add(expired, entry);
+            return;
+        }
+
+        for (int level = 0; level < ticks.length; level++) {
+            long levelStart = current - current % ticks[level];
+            long interval = ticks[level] * buckets[level].length;
+            if (entry.deadline < levelStart + interval) {
+                add(buckets[level][slot(level, entry.deadline)], entry);
+                return;
+            }
+        }
+
+        add(overflow, entry);
+    }
+
+    private void cascade(Set<Entry<K, V>> bucket) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Entry<K, V>> moving = new ArrayList<>(bucket);
+        bucket.clear();
+        moving.forEach(this::place);
+    }
+
+    private void fire(Set<Entry<K, V>> bucket, List<V> due) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        for (Entry<K, V> entry : bucket) {
+            entries.remove(entry.key);
+            due.add(entry.value);
+        }
+        bucket.clear();
+    }
+
+    private int slot(int level, long time) {
+        return (int) ((time / ticks[level]) % buckets[level].length);
+    }
+
+    private static <K, V> void add(Set<Entry<K, V>> bucket, Entry<K, V> entry) {
+        bucket.add(entry);
+        entry.bucket = bucket;
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long deadline;
+        private Set<Entry<K, V>> bucket;
+
+        private Entry(K key, V value, long deadline) {
+            this.key = key;
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+}
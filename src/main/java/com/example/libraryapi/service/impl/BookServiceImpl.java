@@ -1,48 +1,107 @@
 package com.example.libraryapi.service.impl;
 
+import com.example.libraryapi.api.dto.BookDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.service.AfterCommit;
+import com.example.libraryapi.service.BookCount;
+import com.example.libraryapi.service.BookSearchIndex;
 import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.KeysetCursor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.awt.print.Pageable;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImpl implements BookService {
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private BookCount bookCount;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, BookCount bookCount) {
         this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.bookCount = bookCount;
     }
 
     @Override
     public Object save(Book book) {
 
-        if (repository.existsByIsbn( book.getIsbn() )){
-
-            throw new BusinessException("Isbn já cadastrado.");
-
+        // um único insert -> se o isbn já existir o banco recusa pela constraint única
+        try {
+            Book saved = repository.saveAndFlush(book);
+            AfterCommit.run(() -> {
+                searchIndex.put(saved);
+                bookCount.adjust(1);
+            });
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            if (isIsbnViolation(e)) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            throw e;
         }
+    }
 
-        return repository.save(book);
+    private boolean isIsbnViolation(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraint != null && constraint.toLowerCase().contains(Book.UK_ISBN);
     }
 
+    // o livro vem do second-level cache do hibernate (Book é @Cacheable) quando estiver lá
+    // readOnly -> senão do replica, que pode estar atrasado: por isso o livro lido não entra
+    // no cache (findByIdWithoutCachePut); quem alimenta o cache são as escritas e o getByIdForUpdate
     @Override
+    @Transactional(readOnly = true)
     public Optional<Book> getById(Long id) {
+        return repository.findByIdWithoutCachePut(id);
+    }
+
+    // sem readOnly -> primary: a versão conferida no If-Match e o livro copiado para o update
+    // são os atuais (de um replica atrasado dariam 412 ou 409 logo depois de uma escrita)
+    @Override
+    @Transactional
+    public Optional<Book> getByIdForUpdate(Long id) {
         return repository.findById(id);
     }
 
+    // primary -> um replica atrasado responderia 304 com a versão de antes da escrita
+    @Override
+    @Transactional
+    public Optional<Long> getVersion(Long id) {
+        return repository.findVersionById(id);
+    }
+
     @Override
     public void delete(Book book) {
         if (book == null || book.getId() == null){
             throw new IllegalArgumentException("Book id cannot be null");
         }
         repository.delete(book);
+        AfterCommit.run(() -> {
+            searchIndex.remove(book.getId());
+            bookCount.adjust(-1);
+        });
     }
 
     @Override
@@ -51,24 +110,127 @@ public class BookServiceImpl implements BookService {
             throw new IllegalArgumentException("Book id cannot be null");
         }
 
-        return repository.save(book);
+        Book updated = repository.save(book);
+        AfterCommit.run(() -> searchIndex.put(updated));
+        return updated;
     }
 
+    // readOnly -> o hibernate não guarda snapshot nem faz dirty checking (flush manual) no fim
     @Override
-    public Page<Book> find(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+    @Transactional(readOnly = true)
+    public Page<BookDTO> find(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+
+        // busca por titulo/autor -> indice de trigramas, com os mais relevantes primeiro
+        if (useSearchIndex(filter, pageRequest)) {
+            return search(filter, pageRequest);
+        }
+
+        // sem filtro -> o total eh o do BookCount (count(*) periodico, igual em todas as instancias),
+        // sem o count(*) na tabela inteira a cada pagina
+        Long total = bookCount.get();
+        if (isUnfiltered(filter) && total != null) {
+            Slice<BookDTO> slice = repository.findDtoSlice(example(filter), pageRequest);
+            return new PageImpl<>(slice.getContent(), pageRequest, total);
+        }
+
+        return repository.findDtos(example(filter), pageRequest);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<BookDTO> findWithoutCount(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+        // o indice já sabe o total de graça
+        if (useSearchIndex(filter, pageRequest)) {
+            return search(filter, pageRequest);
+        }
+        return repository.findDtoSlice(example(filter), pageRequest);
+    }
 
-        //criando o mecanismo de pesquisa a partir do livro enviado pelo json
-        Example<Book> example = Example.of(filter,
+    //criando o mecanismo de pesquisa a partir do livro enviado pelo json
+    // -> campos nulos do filtro são ignorados (sem filtro = catálogo inteiro)
+    private Example<Book> example(Book filter) {
+        return Example.of(filter,
                 ExampleMatcher
                         .matching()
                         .withIgnoreCase()
-                        .withIncludeNullValues()
                         .withStringMatcher( ExampleMatcher.StringMatcher.CONTAINING ) );
+    }
+
+    private boolean isUnfiltered(Book filter) {
+        return filter.getId() == null
+                && filter.getTitle() == null
+                && filter.getAuthor() == null
+                && filter.getIsbn() == null;
+    }
+
+    // o indice só responde "titulo e/ou autor contém" sem ordenação pedida pelo cliente;
+    // filtro por isbn/id ou sort explicito continuam no banco
+    private boolean useSearchIndex(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+        return searchIndex.isReady()
+                && (filter.getTitle() != null || filter.getAuthor() != null)
+                && filter.getIsbn() == null
+                && filter.getId() == null
+                && pageRequest.getSort().isUnsorted();
+    }
 
-        return repository.findAll(example, pageRequest);
+    private Page<BookDTO> search(Book filter, org.springframework.data.domain.Pageable pageRequest) {
+        long offset = pageRequest.isPaged() ? pageRequest.getOffset() : 0;
+        int limit = pageRequest.isPaged() ? pageRequest.getPageSize() : Integer.MAX_VALUE;
+
+        BookSearchIndex.Result result = searchIndex.search(filter.getTitle(), filter.getAuthor(), offset, limit);
+
+        // uma query pela PK para a pagina, devolvida na ordem do ranking
+        Map<Long, BookDTO> books = repository.findDtoByIdIn(result.getBookIds()).stream()
+                .collect(Collectors.toMap(BookDTO::getId, Function.identity()));
+        List<BookDTO> content = result.getBookIds().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(content, pageRequest, result.getTotal());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> find(Book filter, String after, int size) {
+        KeysetCursor cursor = KeysetCursor.decode(after);
+
+        Example<Book> example = example(filter);
+
+        return cursor == null
+                ? repository.findAfter(example, null, null, size)
+                : repository.findAfter(example, cursor.getKey(), cursor.getId(), size);
+    }
+
+    // query cache do isbn + o livro do second-level cache; readOnly -> senão do replica,
+    // sem guardar no cache, como no getById
+    @Transactional(readOnly = true)
     public Optional<Book> getBookByIsbn(String isbn) {
-        return repository.findByIsbn(isbn);
+        return repository.findByIsbnWithoutCachePut(isbn);
+    }
+
+    @Override
+    @Transactional
+    public List<Book> importBooks(List<Book> books) {
+        // um select para o lote inteiro ao invés de um existsByIsbn por livro
+        Set<String> existing = repository.findExistingIsbns(
+                books.stream().map(Book::getIsbn).collect(Collectors.toSet()));
+
+        Map<Boolean, List<Book>> partition = books.stream()
+                .collect(Collectors.partitioningBy(book -> existing.contains(book.getIsbn())));
+
+        List<Book> imported = repository.saveInBatch(partition.get(false));
+        AfterCommit.run(() -> {
+            imported.forEach(searchIndex::put);
+            bookCount.adjust(imported.size());
+        });
+
+        return partition.get(true);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(Consumer<Book> consumer) {
+        repository.streamAll(consumer);
     }
 }
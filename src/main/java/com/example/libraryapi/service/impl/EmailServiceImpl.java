@@ -4,14 +4,23 @@ import com.example.libraryapi.service.EmailService;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
-@Service
+// envio direto pelo smtp -> usado só pelo MailOutboxWorker
+// (quem injeta EmailService recebe o OutboxEmailService, que eh o @Primary)
+// abre uma conexão por envio -> com application.mail.smtp.pool.enabled=true
+// o PooledSmtpEmailService assume esse papel
+@Service(EmailServiceImpl.SMTP)
+@ConditionalOnProperty(name = PooledSmtpEmailService.ENABLED, havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
+    public static final String SMTP = "smtpEmailService";
+    static final String SUBJECT = "Livro com empréstimo atrasado";
+
     @Value("${application.mail.default-remetent}")
     private String remetent;
 
@@ -22,11 +31,23 @@ public class EmailServiceImpl implements EmailService {
 
         SimpleMailMessage mailMessage = new SimpleMailMessage();
         mailMessage.setFrom(remetent);
-        mailMessage.setSubject("Livro com empréstimo atrasado");
+        mailMessage.setSubject(SUBJECT);
         mailMessage.setText(message);
         mailMessage.setTo(  allEmails.toArray(new String[allEmails.size()])  ); // lista dos recebedores
 
         javaMailSender.send(mailMessage);
 
     }
+
+    @Override
+    public void sendMail(String to, String message) {
+
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom(remetent);
+        mailMessage.setSubject(SUBJECT);
+        mailMessage.setText(message);
+        mailMessage.setTo(to);
+
+        javaMailSender.send(mailMessage);
+    }
 }
@@ -1,32 +1,65 @@
 package com.example.libraryapi.service.impl;
 
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.api.dto.LoanFilterDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
 import com.example.libraryapi.model.repository.LoanRepository;
+import com.example.libraryapi.service.AfterCommit;
+import com.example.libraryapi.service.KeysetCursor;
 import com.example.libraryapi.service.LoanService;
+import com.example.libraryapi.service.LoansByBook;
+import com.example.libraryapi.service.OverdueLoanTracker;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class LoanServiceImpl implements LoanService {
     private LoanRepository repository;
+    private BookRepository bookRepository;
+    private OverdueLoanTracker overdueLoanTracker;
 
-    public LoanServiceImpl(LoanRepository repository) {
+    public LoanServiceImpl(LoanRepository repository,
+                           BookRepository bookRepository,
+                           OverdueLoanTracker overdueLoanTracker) {
         this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.overdueLoanTracker = overdueLoanTracker;
     }
 
+    // o livro muda de disponivel para emprestado -> sai do second-level cache depois do commit
+    // (antes do commit uma leitura no meio guardaria a linha antiga de novo)
     @Override
+    @Transactional
     public Loan save( Loan loan ) {
-        if ( repository.existsByBookAndNotReturned(loan.getBook()) ){
+        Long bookId = loan.getBook().getId();
+
+        // persist só gera o id (sequence); a reserva eh o update condicional
+        // (active_loan_id is null) -> com dois pedidos simultaneos o segundo espera o lock
+        // da linha do livro, não encontra mais o livro livre e atualiza 0 linhas.
+        // sem consulta previa (exists + update deixava os dois passarem) e o rollback descarta o insert
+        Loan saved = repository.save(loan);
+        if ( bookRepository.markActiveLoan(bookId, saved.getId()) == 0 ){
            throw new BusinessException("Book already loaned.");
         }
-        return repository.save(loan);
+
+        overdueLoanTracker.track(saved);
+        AfterCommit.run(() -> bookRepository.evictFromCache(Collections.singletonList(bookId)));
+        return saved;
 
     }
 
@@ -35,37 +68,137 @@ public class LoanServiceImpl implements LoanService {
         return repository.findById(id);
     }
 
+    // devolução (returned = true) libera o livro, senão o emprestimo volta a ser o ativo
+    // -> reabrir com o livro emprestado para outro desfaz tudo (como no save)
     @Override
+    @Transactional
     public Loan update(Loan loan) {
-        return repository.save(loan);
+        Loan updated = repository.save(loan);
+
+        Long bookId = updated.getBook().getId();
+        if ( Boolean.TRUE.equals(updated.getReturned()) ) {
+            bookRepository.clearActiveLoan(bookId, updated.getId());
+        } else if ( bookRepository.markActiveLoan(bookId, updated.getId()) == 0 ) {
+            throw new BusinessException("Book already loaned.");
+        }
+        // devolvido sai do timing wheel, em aberto volta a ser acompanhado
+        overdueLoanTracker.track(updated);
+        AfterCommit.run(() -> bookRepository.evictFromCache(Collections.singletonList(bookId)));
+
+        return updated;
     }
 
+    // mesmos efeitos do update, mas em lote: um select (com os livros), um update nos
+    // emprestimos e, na devolução, um update que libera os livros
+    // -> devolve só os emprestimos atualizados (reabertura com o livro ocupado fica de fora)
     @Override
-    public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
+    @Transactional
+    public List<Loan> updateReturned(Collection<Long> ids, Boolean returned) {
+        List<Loan> loans = repository.findAllWithBookByIdIn(ids);
+
+        if (!Boolean.TRUE.equals(returned)) {
+            // reabertura eh rara -> um update por livro, só se o livro ainda estiver livre;
+            // o livro vem antes para que o emprestimo recusado nem seja reaberto
+            loans = loans.stream()
+                    .filter(loan -> bookRepository.markActiveLoan(loan.getBook().getId(), loan.getId()) > 0)
+                    .collect(Collectors.toList());
+        }
+        if (loans.isEmpty()) {
+            return loans;
+        }
+
+        List<Long> loanIds = loans.stream().map(Loan::getId).collect(Collectors.toList());
+        List<Long> bookIds = loans.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toList());
+        repository.updateReturned(loanIds, returned);
+
+        if (Boolean.TRUE.equals(returned)) {
+            bookRepository.clearActiveLoans(bookIds, loanIds);
+        }
+
+        // os emprestimos estão destacados (clear do update) -> só atualiza a cópia em memória
+        loans.forEach(loan -> {
+            loan.setReturned(returned);
+            overdueLoanTracker.track(loan);
+        });
+
+        AfterCommit.run(() -> bookRepository.evictFromCache(bookIds));
+
+        return loans;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> find(LoanFilterDTO filterDTO, Pageable pageable) {
         return repository
-                .findByBookIsbnOrCustomer(
+                .findDtoByBookIsbnOrCustomer(
                         filterDTO.getIsbn(),
                         filterDTO.getCustomer(),
                         pageable);
     }
 
     @Override
-    public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-        return repository.findByBook(book, pageable);
+    @Transactional(readOnly = true)
+    public Slice<LoanDTO> findWithoutCount(LoanFilterDTO filterDTO, Pageable pageable) {
+        return repository.findDtoSliceByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
     }
 
     @Override
-    public List<Loan> getAllLateLoans() {
+    @Transactional(readOnly = true)
+    public Slice<Loan> find(LoanFilterDTO filterDTO, String after, int size) {
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        Pageable firstRows = PageRequest.of(0, size);
+
+        if (cursor == null) {
+            return repository.findFirstSliceByBookIsbnOrCustomer(
+                    filterDTO.getIsbn(), filterDTO.getCustomer(), firstRows);
+        }
+
+        return repository.findSliceByBookIsbnOrCustomerAfter(
+                filterDTO.getIsbn(),
+                filterDTO.getCustomer(),
+                parseLoanDate(cursor.getKey()),
+                cursor.getId(),
+                firstRows);
+    }
+
+    private LocalDate parseLoanDate(String key) {
+        try {
+            return LocalDate.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BusinessException("Invalid cursor.");
+        }
+    }
+
+    // readOnly -> replica; versão e pagina na mesma transação (ver LoansByBook)
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<LoansByBook> getLoansByBook(Long bookId, Pageable pageable) {
+        return repository.findLoansVersionByBookId(bookId)
+                .map(version -> new LoansByBook(version, repository.findDtoByBookId(bookId, pageable)));
+    }
+
+    // primary -> a versão de um replica atrasado daria 304 logo depois de um emprestimo
+    @Override
+    @Transactional
+    public Optional<LoanRepository.LoansVersion> getLoansByBookVersion(Long bookId) {
+        return repository.findLoansVersionByBookId(bookId);
+    }
+
+    @Override
+    public List<Loan> getLateLoans(String afterEmail, Long afterId, int size) {
+        return repository.findLateLoansAfter(lateLoanDate(), afterEmail, afterId, PageRequest.of(0, size));
+    }
+
+    private LocalDate lateLoanDate() {
         // são 4 dias de emprestimo pra estar atrasado
         // se chegar no 3o e ele tiver entregue, ainda estará em dia
-        final Integer loanDays = 4;
-
-        // dia que o customer fez emprestimo (há quatro dias)
-        // e começa a estar atrasado hoje
-        LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
+        // -> dia que o customer fez emprestimo (há quatro dias) e começa a estar atrasado hoje
+        return LocalDate.now().minusDays(LOAN_DAYS);
+    }
 
-        // encontre pela data de emprestimo menor que (ou igual) a threeDaysAgo
-        // e que não esteja retornado
-        return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLoans(Consumer<Loan> consumer) {
+        repository.streamAll(consumer);
     }
 }
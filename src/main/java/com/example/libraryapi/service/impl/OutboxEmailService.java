@@ -0,0 +1,47 @@
+package com.example.libraryapi.service.impl;
+
+import com.example.libraryapi.model.entity.MailOutbox;
+import com.example.libraryapi.model.repository.MailOutboxRepository;
+import com.example.libraryapi.service.EmailService;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// "enviar" um email eh só gravar na tabela mail_outbox
+// -> entra na transação de quem chamou (se houver) e nunca espera o smtp
+@Primary
+@Service
+@RequiredArgsConstructor
+public class OutboxEmailService implements EmailService {
+
+    private final MailOutboxRepository repository;
+
+    @Override
+    @Transactional
+    public void sendMails(String message, List<String> allEmails) {
+        repository.saveAll(allEmails.stream()
+                .map(email -> pending(email, message))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    @Transactional
+    public void sendMail(String to, String message) {
+        repository.save(pending(to, message));
+    }
+
+    private static MailOutbox pending(String to, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        return MailOutbox.builder()
+                .recipient(to)
+                .message(message)
+                .status(MailOutbox.Status.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.libraryapi.service.impl;
+
+import com.example.libraryapi.service.EmailService;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+// envio pelo smtp reaproveitando conexões já abertas (handshake, starttls e auth uma vez só)
+// -> até pool-size conexões; quem não acha conexão livre espera uma ser devolvida
+// -> conexão que caiu eh descartada e reaberta, e o envio eh tentado mais uma vez
+// -> destinatário recusado (endereço inválido, SendFailedException) não derruba a conexão nem
+//    interrompe os outros: as falhas vão juntas numa MailSendException no fim
+@Slf4j
+@Service(EmailServiceImpl.SMTP)
+@ConditionalOnProperty(name = PooledSmtpEmailService.ENABLED, havingValue = "true")
+public class PooledSmtpEmailService implements EmailService {
+
+    public static final String ENABLED = "application.mail.smtp.pool.enabled";
+
+    private final JavaMailSenderImpl mailSender;
+    private final String remetent;
+
+    private final BlockingQueue<Transport> idle = new LinkedBlockingQueue<>();
+    private final Semaphore permits;
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+
+    public PooledSmtpEmailService(JavaMailSenderImpl mailSender,
+                                  @Value("${application.mail.default-remetent}") String remetent,
+                                  @Value("${application.mail.smtp.pool.size:4}") int poolSize) {
+        this.mailSender = mailSender;
+        this.remetent = remetent;
+        this.permits = new Semaphore(poolSize);
+    }
+
+    @Override
+    public void sendMails(String message, List<String> allEmails) {
+        // uma mensagem por destinatário, todas pela mesma conexão
+        send(message, allEmails);
+    }
+
+    @Override
+    public void sendMail(String to, String message) {
+        send(message, Collections.singletonList(to));
+    }
+
+    private void send(String text, List<String> recipients) {
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+
+        permits.acquireUninterruptibly();
+        Transport transport = idle.poll();
+        try {
+            for (String to : recipients) {
+                MimeMessage message;
+                try {
+                    message = createMessage(to, text);
+                } catch (MailParseException e) {
+                    failed.put(to, e);
+                    continue;
+                }
+
+                try {
+                    transport = connected(transport);
+                    transport.sendMessage(message, message.getAllRecipients());
+                } catch (SendFailedException rejected) {
+                    // o servidor recusou o destinatário -> a conexão continua boa
+                    failed.put(to, rejected);
+                } catch (MessagingException first) {
+                    // a conexão pode ter caído (timeout do servidor, rede) -> reabre e tenta de novo
+                    log.debug("smtp send to {} failed, reconnecting: {}", to, first.getMessage());
+                    close(transport);
+                    transport = connected(null);
+                    try {
+                        transport.sendMessage(message, message.getAllRecipients());
+                    } catch (SendFailedException rejected) {
+                        failed.put(to, rejected);
+                    }
+                }
+            }
+        } catch (MessagingException e) {
+            // nem a conexão nova funcionou -> descarta e desiste do resto
+            close(transport);
+            transport = null;
+            throw new MailSendException("Could not send mail: " + e.getMessage(), e, failed);
+        } finally {
+            if (transport != null) {
+                idle.offer(transport);
+            }
+            permits.release();
+        }
+
+        if (!failed.isEmpty()) {
+            throw new MailSendException(failed);
+        }
+    }
+
+    private MimeMessage createMessage(String to, String text) {
+        try {
+            MimeMessage message = new MimeMessage(mailSender.getSession());
+            message.setFrom(new InternetAddress(remetent));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress(to, true));
+            message.setSubject(EmailServiceImpl.SUBJECT, StandardCharsets.UTF_8.name());
+            message.setText(text, StandardCharsets.UTF_8.name());
+            message.saveChanges();
+            return message;
+        } catch (AddressException e) {
+            throw new MailParseException("Invalid address: " + to, e);
+        } catch (MessagingException e) {
+            throw new MailParseException(e);
+        }
+    }
+
+    private Transport connected(Transport transport) throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+        close(transport);
+
+        // mesmas configurações do JavaMailSender (spring.mail.*)
+        String protocol = mailSender.getProtocol() != null
+                ? mailSender.getProtocol()
+                : mailSender.getSession().getProperty("mail.transport.protocol");
+        Transport opened = mailSender.getSession().getTransport(protocol != null ? protocol : "smtp");
+        String username = emptyToNull(mailSender.getUsername());
+        String password = emptyToNull(mailSender.getPassword());
+        opened.connect(mailSender.getHost(), mailSender.getPort(), username, password);
+        connectionsOpened.incrementAndGet();
+        return opened;
+    }
+
+    // quantas conexões foram abertas desde o inicio (reconexões incluídas)
+    int connectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            close(transport);
+        }
+    }
+
+    private static void close(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            // conexão já estava quebrada, nada a fazer
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.libraryapi.api.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.LocalDate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// o json dos serializadores escritos a mão tem que ser o mesmo do serializador por reflexão
+@JsonTest
+@ActiveProfiles("test")
+class DtoSerializersTest {
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final ObjectMapper reflective = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    @DisplayName("deve serializar o livro igual ao jackson padrão")
+    void bookTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1L).title("Aventuras \"do\" Fulano").author("Fulano").isbn("123").available(true).build();
+
+        assertSameJson(book);
+        assertSameJson(new BookDTO());
+    }
+
+    @Test
+    @DisplayName("deve serializar o emprestimo (com o livro aninhado) igual ao jackson padrão")
+    void loanTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1L).title("Aventuras").author("Fulano").isbn("123").available(false).build();
+        LoanDTO loan = LoanDTO.builder().id(2L).isbn("123").customer("ciclano").customerEmail("ciclano@email.com")
+                .book(book).loanDate(LocalDate.of(2024, 1, 31)).returned(false).build();
+
+        assertSameJson(loan);
+        assertSameJson(new LoanDTO());
+        assertThat(objectMapper.writeValueAsString(loan)).contains("\"loanDate\":\"2024-01-31\"");
+    }
+
+    private void assertSameJson(Object dto) throws Exception {
+        String json = objectMapper.writeValueAsString(dto);
+
+        assertThat(json).isEqualTo(reflective.writeValueAsString(dto));
+        assertThat(objectMapper.getSerializerProviderInstance().findValueSerializer(dto.getClass()))
+                .isInstanceOfAny(BookDTOSerializer.class, LoanDTOSerializer.class);
+    }
+}
@@ -1,15 +1,22 @@
 package com.example.libraryapi.api.resource;
 
+import com.example.libraryapi.api.mapper.BookMapperImpl;
 import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.LoanRepository;
+import com.example.libraryapi.service.BookImporter;
 import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.KeysetCursor;
 import com.example.libraryapi.service.LoanService;
+import com.example.libraryapi.service.LoansByBook;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -17,21 +24,35 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class) // para poder rodar com o springboot
@@ -39,6 +60,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test") // setando que esse está no perfil de teste
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, BookImporter.class}) // mapper gerado pelo mapstruct e o importador de verdade (service mockado)
 class BookControllerTest {
 
     static String BOOK_API = "/api/books";
@@ -159,7 +181,8 @@ class BookControllerTest {
                 .andExpect( jsonPath("id").value(id) )
                 .andExpect( jsonPath("title").value( book.getTitle() ) )
                 .andExpect( jsonPath("author").value( book.getAuthor() ) )
-                .andExpect( jsonPath("isbn").value( book.getIsbn() ) );
+                .andExpect( jsonPath("isbn").value( book.getIsbn() ) )
+                .andExpect( jsonPath("available").value( true ) );
     }
 
     @Test
@@ -182,12 +205,49 @@ class BookControllerTest {
                 .andExpect( status().isNotFound() );
     }
 
+    @Test
+    @DisplayName("Deve responder 304 pela versão, sem buscar o livro, quando o ETag não mudou")
+    void getBookNotModifiedTest() throws Exception {
+
+        BDDMockito.given( service.getVersion(1L) ).willReturn( Optional.of(2L) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform( request )
+                .andExpect( status().isNotModified() )
+                .andExpect( header().string(HttpHeaders.ETAG, "\"2\"") )
+                .andExpect( content().string("") );
+        Mockito.verify(service, Mockito.never()).getById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Deve devolver o livro com o novo ETag quando a versão mudou")
+    void getBookModifiedTest() throws Exception {
+
+        Book book = Book.builder().id(1L).title("As aventuras").author("Artur").isbn("123").version(3L).build();
+        BDDMockito.given( service.getVersion(1L) ).willReturn( Optional.of(3L) );
+        BDDMockito.given( service.getById(1L) ).willReturn( Optional.of(book) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform( request )
+                .andExpect( status().isOk() )
+                .andExpect( header().string(HttpHeaders.ETAG, "\"3\"") )
+                .andExpect( jsonPath("id").value(1L) );
+    }
+
     @Test
     @DisplayName("Deve deletar um livro")
     void deleteBookTest() throws Exception{
 
-        //mockando o getById para que o livro exista
-        BDDMockito.given( service.getById( anyLong() ) )
+        //mockando o getByIdForUpdate para que o livro exista
+        BDDMockito.given( service.getByIdForUpdate( anyLong() ) )
                 .willReturn( Optional.of( Book.builder().id(1L).build() ) );
 
         // execução --> chamando a api para o delete do livro 1
@@ -206,8 +266,8 @@ class BookControllerTest {
     @DisplayName("Deve retornar resource not found quando não encontrar um livro p/ deletar")
     void deleteInexistentBookTest() throws Exception{
 
-        //mockando o getById para que o livro exista
-        BDDMockito.given( service.getById( anyLong() ) )
+        //mockando o getByIdForUpdate para que o livro exista
+        BDDMockito.given( service.getByIdForUpdate( anyLong() ) )
                 .willReturn( Optional.empty() ) ;
 
         // execução --> chamando a api para o delete do livro 1
@@ -236,12 +296,12 @@ class BookControllerTest {
                 .isbn("123")
                 .build();
 
-        //mockando o getById para que o livro exista
-        BDDMockito.given( service.getById( id ) )
+        //mockando o getByIdForUpdate para que o livro exista
+        BDDMockito.given( service.getByIdForUpdate( id ) )
                 .willReturn( Optional.of( book_to_update ) );
 
         //mockando o service.update para que atualizemos o livro
-        BDDMockito.given( service.update( book_to_update ) )
+        BDDMockito.given( service.update( Mockito.any(Book.class) ) )
                 .willReturn(
                         Book.builder()
                                 .id( id )
@@ -270,6 +330,30 @@ class BookControllerTest {
                 .andExpect( jsonPath("author").value( createBook().getAuthor() ) )
                 .andExpect( jsonPath("isbn").value( createBook().getIsbn() ) );
 
+        // o livro encontrado (o do cache) não eh alterado, o update recebe uma cópia
+        assertThat( book_to_update.getTitle() ).isEqualTo("some title");
+        Mockito.verify(service).update( Mockito.argThat( book -> book != book_to_update
+                && createBook().getTitle().equals(book.getTitle()) ) );
+    }
+
+    @Test
+    @DisplayName("Deve retornar 412 ao atualizar um livro com If-Match de uma versão antiga")
+    void updateBookWithStaleVersionTest() throws Exception{
+
+        Book book = Book.builder().id(1L).title("some title").author("some author").isbn("123").version(5L).build();
+        BDDMockito.given( service.getByIdForUpdate( 1L ) ).willReturn( Optional.of( book ) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/" + 1))
+                .header(HttpHeaders.IF_MATCH, "\"4\"")
+                .content( new ObjectMapper().writeValueAsString( createBook() ) )
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType( MediaType.APPLICATION_JSON );
+
+        mvc
+                .perform( request )
+                .andExpect( status().isPreconditionFailed() );
+        Mockito.verify(service, Mockito.never()).update(Mockito.any());
     }
 
     @Test
@@ -278,8 +362,8 @@ class BookControllerTest {
 
         Long id = 1L;
 
-        //mockando o getById para que o livro nao exista
-        BDDMockito.given( service.getById( id ) )
+        //mockando o getByIdForUpdate para que o livro nao exista
+        BDDMockito.given( service.getByIdForUpdate( id ) )
                 .willReturn( Optional.empty() );
 
         // criando o json que vou enviar para atualizar livro 1L
@@ -300,6 +384,25 @@ class BookControllerTest {
     }
 
 
+    @Test
+    @DisplayName("Deve filtrar livros sem total quando count=false")
+    void findBooksWithoutCountTest() throws Exception{
+
+        BookDTO book = BookDTO.builder().id(1L).title("As aventuras").author("Artur").isbn("001").available(true).build();
+        BDDMockito.given( service.findWithoutCount( Mockito.any(Book.class), Mockito.any(Pageable.class) ) )
+                .willReturn( new SliceImpl<>( Arrays.asList( book ), PageRequest.of(0, 1), true ) );
+
+        mvc
+                .perform( MockMvcRequestBuilders
+                        .get(BOOK_API.concat("?author=Artur&page=0&size=1&count=false"))
+                        .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("content", Matchers.hasSize(1)) )
+                .andExpect( jsonPath("hasNext").value(true) )
+                .andExpect( jsonPath("total").doesNotExist() );
+        Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
     @Test
     @DisplayName("Deve filtrar livros")
     void findBooksTest() throws Exception{
@@ -307,16 +410,17 @@ class BookControllerTest {
         // cenário
         Long id = 1L;
 
-        Book book = Book.builder()
+        BookDTO book = BookDTO.builder()
                     .id(createBook().getId())
                     .author(createBook().getAuthor())
                     .isbn(createBook().getIsbn())
                     .title(createBook().getTitle())
+                    .available(true)
                     .build();
 
-        // simulando pedido de pesquisa paginado
+        // simulando pedido de pesquisa paginado (o service já devolve a projeção)
         BDDMockito.given( service.find( Mockito.any(Book.class), Mockito.any(Pageable.class) ) )
-                .willReturn( new PageImpl<Book>
+                .willReturn( new PageImpl<BookDTO>
                         (  Arrays.asList( book ), PageRequest.of(0, 100), 1));
 
         // pesquisa que vou fazer
@@ -333,10 +437,231 @@ class BookControllerTest {
                 .perform( request )
                 .andExpect( status().isOk() )
                 .andExpect( jsonPath("content", Matchers.hasSize(1)) )
-                .andExpect( jsonPath("totalElements").value(1) )
-                .andExpect( jsonPath("pageable.pageSize").value(100) )
-                .andExpect( jsonPath("pageable.pageNumber").value(0) );
+                .andExpect( jsonPath("total").value(1) )
+                .andExpect( jsonPath("size").value(100) )
+                .andExpect( jsonPath("page").value(0) )
+                .andExpect( jsonPath("hasNext").value(false) )
+                .andExpect( jsonPath("pageable").doesNotExist() );
+
+    }
+
+    @Test
+    @DisplayName("deve filtrar livros com paginação por cursor (keyset)")
+    void findBooksWithCursorTest() throws Exception{
+
+        // cenário -> o service achou 2 livros e ainda tem mais
+        Book first = Book.builder().id(1L).author("Arthur").title("Aventuras").isbn("001").build();
+        Book last = Book.builder().id(2L).author("Arthur").title("Aventuras II").isbn("002").build();
+
+        BDDMockito.given( service.find( Mockito.any(Book.class), Mockito.eq(""), Mockito.eq(2) ) )
+                .willReturn( new SliceImpl<>( Arrays.asList( first, last ), PageRequest.of(0, 2), true ) );
+
+        //simulando solicitação à API -> primeira pagina
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?author=Arthur&after=&size=2"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        // o next aponta para o ultimo livro da pagina -> (title, id) do "Aventuras II"
+        mvc
+                .perform( request )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("content", Matchers.hasSize(2)) )
+                .andExpect( jsonPath("hasNext").value(true) )
+                .andExpect( jsonPath("next").value( KeysetCursor.of(last).encode() ) )
+                .andExpect( jsonPath("totalElements").doesNotExist() );
+    }
+
+    @Test
+    @DisplayName("deve importar livros em massa a partir de NDJSON reportando os erros por linha")
+    void importBooksFromNdJsonTest() throws Exception{
+
+        // cenário -> o isbn 002 já está cadastrado no banco
+        String body = String.join("\n",
+                "{\"title\":\"Aventuras\",\"author\":\"Arthur\",\"isbn\":\"001\"}",
+                "{\"author\":\"Arthur\",\"isbn\":\"003\"}",
+                "{\"title\":\"Repetido\",\"author\":\"Arthur\",\"isbn\":\"001\"}",
+                "",
+                "{\"title\":\"Cadastrado\",\"author\":\"Arthur\",\"isbn\":\"002\"}",
+                "{ isso nao eh json");
+
+        BDDMockito.given( service.importBooks( Mockito.anyList() ) )
+                .willAnswer( invocation -> {
+                    List<Book> books = invocation.getArgument(0);
+                    return books.stream().filter( book -> book.getIsbn().equals("002") ).collect(Collectors.toList());
+                });
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType("application/x-ndjson")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(body);
+
+        // verificação -> só o 001 entrou; as linhas 2, 3, 5 e 6 foram recusadas
+        mvc.perform( request )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("received").value(5) )
+                .andExpect( jsonPath("imported").value(1) )
+                .andExpect( jsonPath("rejected").value(4) )
+                .andExpect( jsonPath("errors", Matchers.hasSize(4)) )
+                .andExpect( jsonPath("errors[0].line").value(2) )
+                .andExpect( jsonPath("errors[0].errors[0]").value("title must not be empty") )
+                .andExpect( jsonPath("errors[1].line").value(3) )
+                .andExpect( jsonPath("errors[1].errors[0]").value("Isbn repetido na importação.") )
+                .andExpect( jsonPath("errors[2].line").value(6) )
+                .andExpect( jsonPath("errors[3].line").value(5) )
+                .andExpect( jsonPath("errors[3].errors[0]").value("Isbn já cadastrado.") );
+    }
+
+    @Test
+    @DisplayName("deve importar livros em massa a partir de CSV")
+    void importBooksFromCsvTest() throws Exception{
+
+        // cenário -> cabeçalho em outra ordem e titulo com virgula entre aspas
+        String body = "isbn,title,author\n"
+                + "001,\"Aventuras, volume 1\",Arthur\n"
+                + "002,Aventuras 2,Arthur\n";
+
+        BDDMockito.given( service.importBooks( Mockito.anyList() ) ).willReturn( Collections.emptyList() );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType("text/csv")
+                .accept(MediaType.APPLICATION_JSON)
+                .content(body);
+
+        mvc.perform( request )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("received").value(2) )
+                .andExpect( jsonPath("imported").value(2) )
+                .andExpect( jsonPath("errors", Matchers.hasSize(0)) );
+
+        // verificando que o titulo com virgula foi lido inteiro
+        ArgumentCaptor<List<Book>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(service).importBooks(captor.capture());
+        assertThat(captor.getValue()).extracting(Book::getTitle).containsExactly("Aventuras, volume 1", "Aventuras 2");
+    }
+
+    @Test
+    @DisplayName("deve exportar os livros em NDJSON, um por linha")
+    void exportBooksAsNdJsonTest() throws Exception{
+
+        givenExportedBooks();
+
+        // o corpo eh escrito depois que o controller retorna -> despacho assincrono
+        MvcResult started = mvc.perform( MockMvcRequestBuilders.get(BOOK_API.concat("/export")) )
+                .andExpect( request().asyncStarted() )
+                .andReturn();
+
+        mvc.perform( asyncDispatch(started) )
+                .andExpect( status().isOk() )
+                .andExpect( header().string("Content-Type", "application/x-ndjson") )
+                .andExpect( content().string(
+                        "{\"id\":1,\"title\":\"Aventuras\",\"author\":\"Arthur\",\"isbn\":\"001\",\"available\":true}\n"
+                        + "{\"id\":2,\"title\":\"Aventuras, volume 2\",\"author\":\"Arthur\",\"isbn\":\"002\",\"available\":false}") );
+    }
+
+    @Test
+    @DisplayName("deve exportar os livros em CSV com cabeçalho")
+    void exportBooksAsCsvTest() throws Exception{
+
+        givenExportedBooks();
+
+        MvcResult started = mvc.perform( MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=csv")) )
+                .andExpect( request().asyncStarted() )
+                .andReturn();
+
+        // titulo com virgula vai entre aspas
+        mvc.perform( asyncDispatch(started) )
+                .andExpect( status().isOk() )
+                .andExpect( header().string("Content-Type", "text/csv") )
+                .andExpect( content().string("id,title,author,isbn,available\n"
+                        + "1,Aventuras,Arthur,001,true\n"
+                        + "2,\"Aventuras, volume 2\",Arthur,002,false\n") );
+    }
+
+    @Test
+    @DisplayName("deve recusar exportação em formato desconhecido")
+    void exportBooksInvalidFormatTest() throws Exception{
+
+        mvc.perform( MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=xml")) )
+                .andExpect( status().isBadRequest() );
+
+        Mockito.verify(service, Mockito.never()).exportBooks(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("deve listar os emprestimos de um livro pela projeção, sem buscar o livro")
+    void loansByBookTest() throws Exception{
+
+        LoanDTO loan = new LoanDTO(5L, "Fulano", "fulano@email.com", LocalDate.of(2024, 1, 31), false,
+                1L, "Aventuras", "Arthur", "001", false);
+        LoanRepository.LoansVersion version = loansVersion(3L, 1L, 2L);
+        BDDMockito.given( loanService.getLoansByBook( Mockito.eq(1L), Mockito.any(Pageable.class) ) )
+                .willReturn( Optional.of( new LoansByBook( version,
+                        new PageImpl<>( Arrays.asList( loan ), PageRequest.of(0, 10), 1 ) ) ) );
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans?page=0&size=10"))
+                        .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( header().string(HttpHeaders.ETAG, "\"3-1-2\"") )
+                .andExpect( jsonPath("content", Matchers.hasSize(1)) )
+                .andExpect( jsonPath("content[0].isbn").value("001") )
+                .andExpect( jsonPath("content[0].book.title").value("Aventuras") )
+                .andExpect( jsonPath("content[0].book.available").value(false) )
+                .andExpect( jsonPath("total").value(1) );
+
+        Mockito.verify(service, Mockito.never()).getById(anyLong());
+        // sem If-None-Match não há o que conferir no primary
+        Mockito.verify(loanService, Mockito.never()).getLoansByBookVersion(anyLong());
+    }
+
+    @Test
+    @DisplayName("deve responder 304 pela versão do primary, sem buscar a pagina de emprestimos")
+    void loansByBookNotModifiedTest() throws Exception{
+
+        LoanRepository.LoansVersion version = loansVersion(3L, 1L, 2L);
+        BDDMockito.given( loanService.getLoansByBookVersion(1L) ).willReturn( Optional.of( version ) );
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans"))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3-1-2\"") )
+                .andExpect( status().isNotModified() );
+
+        Mockito.verify(loanService, Mockito.never()).getLoansByBook( anyLong(), Mockito.any(Pageable.class) );
+    }
+
+    @Test
+    @DisplayName("deve retornar not found ao listar emprestimos de um livro inexistente")
+    void loansByBookNotFoundTest() throws Exception{
+
+        BDDMockito.given( loanService.getLoansByBook( Mockito.eq(1L), Mockito.any(Pageable.class) ) )
+                .willReturn( Optional.empty() );
+
+        mvc
+                .perform( MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans")) )
+                .andExpect( status().isNotFound() );
+    }
+
+    private static LoanRepository.LoansVersion loansVersion(Long bookVersion, Long loans, Long loanVersions) {
+        LoanRepository.LoansVersion version = Mockito.mock(LoanRepository.LoansVersion.class);
+        BDDMockito.given( version.getBookVersion() ).willReturn( bookVersion );
+        BDDMockito.given( version.getLoans() ).willReturn( loans );
+        BDDMockito.given( version.getLoanVersions() ).willReturn( loanVersions );
+        return version;
+    }
 
+    @SuppressWarnings("unchecked")
+    private void givenExportedBooks() {
+        Book first = Book.builder().id(1L).author("Arthur").title("Aventuras").isbn("001").build();
+        Book second = Book.builder().id(2L).author("Arthur").title("Aventuras, volume 2").isbn("002").activeLoanId(7L).build();
+
+        Mockito.doAnswer( invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(service).exportBooks( Mockito.any() );
     }
 
     private static BookDTO createBook() {
@@ -1,8 +1,11 @@
 package com.example.libraryapi.api.resource;
 
+import com.example.libraryapi.api.mapper.BookMapperImpl;
+import com.example.libraryapi.api.mapper.LoanMapperImpl;
 import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.api.dto.LoanFilterDTO;
 import com.example.libraryapi.api.dto.ReturnedLoanDTO;
+import com.example.libraryapi.api.dto.ReturnedLoansDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
@@ -12,6 +15,7 @@ import com.example.libraryapi.service.LoanServiceTest;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -24,24 +28,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static com.example.libraryapi.service.LoanServiceTest.createLoan;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -50,6 +67,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test") // setando que esse está no perfil de teste
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import({BookMapperImpl.class, LoanMapperImpl.class}) // mappers gerados pelo mapstruct
 class LoanControllerTest {
 
     static final String LOAN_API = "/api/loans";
@@ -181,25 +199,82 @@ class LoanControllerTest {
         String json = new ObjectMapper().writeValueAsString(dto);
 
         //quando eu chamar o getById() vou retornar esse loan aqui
-        Loan loan = Loan.builder().id(1L).build();
+        Loan loan = Loan.builder().id(1L).version(3L).build();
         BDDMockito.given( loanService.getById(Mockito.anyLong()) ).willReturn(Optional.of(loan));
+        BDDMockito.given( loanService.update(loan) ).willReturn(Loan.builder().id(1L).returned(true).version(4L).build());
 
-        //mockando o envio do postman para o loan de id 1
+        //mockando o envio do postman para o loan de id 1, com a versão que o cliente conhece
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .patch(  LOAN_API.concat("/1")  )
+                .header(  HttpHeaders.IF_MATCH, "\"3\""  )
                 .accept(  MediaType.APPLICATION_JSON  )
                 .contentType(  MediaType.APPLICATION_JSON  )
                 .content(  json  );//enviando o json que criei no cenário
 
 
-        // verificação
+        // verificação -> a resposta traz a nova versão
         mvc.perform(  request  )
-                .andExpect(  status().isOk()  );
+                .andExpect(  status().isOk()  )
+                .andExpect(  header().string(HttpHeaders.ETAG, "\"4\"")  );
         // vendo se o loanService.update() foi chamado uma vez
         Mockito.verify(loanService, Mockito.times(1)).update(loan);
 
     }
 
+    @Test
+    @DisplayName("Deve recusar a devolução com If-Match de uma versão antiga")
+    void returnBookWithStaleVersionTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDTO.builder().returned(true).build());
+
+        Loan loan = Loan.builder().id(1L).version(4L).build();
+        BDDMockito.given( loanService.getById(Mockito.anyLong()) ).willReturn(Optional.of(loan));
+
+        mvc.perform( MockMvcRequestBuilders.patch( LOAN_API.concat("/1") )
+                        .header( HttpHeaders.IF_MATCH, "\"3\"" )
+                        .accept( MediaType.APPLICATION_JSON )
+                        .contentType( MediaType.APPLICATION_JSON )
+                        .content( json ) )
+                .andExpect( status().isPreconditionFailed() );
+        Mockito.verify(loanService, Mockito.never()).update(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve devolver vários livros de uma vez e informar os ids inexistentes")
+    void returnBooksTest() throws Exception {
+        // cenário -> ids repetidos contam uma vez só
+        ReturnedLoansDTO dto = ReturnedLoansDTO.builder().ids(Arrays.asList(1L, 2L, 1L)).returned(true).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        BDDMockito.given( loanService.updateReturned(Mockito.anyCollection(), Mockito.eq(true)) )
+                .willReturn(Arrays.asList(Loan.builder().id(1L).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch( LOAN_API )
+                .accept( MediaType.APPLICATION_JSON )
+                .contentType( MediaType.APPLICATION_JSON )
+                .content( json );
+
+        // verificação
+        mvc.perform( request )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("updated").value(Matchers.contains(1)) )
+                .andExpect( jsonPath("notFound").value(Matchers.contains(2)) );
+        Mockito.verify(loanService).updateReturned(new LinkedHashSet<>(Arrays.asList(1L, 2L)), true);
+    }
+
+    @Test
+    @DisplayName("Deve recusar devolução em lote sem ids")
+    void returnBooksWithoutIdsTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoansDTO.builder().returned(true).build());
+
+        mvc.perform( MockMvcRequestBuilders.patch( LOAN_API )
+                        .accept( MediaType.APPLICATION_JSON )
+                        .contentType( MediaType.APPLICATION_JSON )
+                        .content( json ) )
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath("allErrors[0]").value("ids must not be empty") );
+    }
+
     @Test
     @DisplayName("Deve retornar 404 quando tentar devolver um livro inexistente.")
     void returnInexistentBookTest() throws Exception {
@@ -242,9 +317,12 @@ class LoanControllerTest {
         // VOU QUERER O PAGE NA PAGINA 0 E TAMANHO 100
         PageRequest pageRequest = PageRequest.of(0, 100);
 
-        // VOU COLOCAR O MEU LOAN DENTRO DO PAGE -> TAMANHO TOTAL EH DE 1 LOAN
-        Page<Loan> page = new PageImpl<>
-                (Arrays.asList(loan), pageRequest, 1);
+        // VOU COLOCAR O MEU LOAN (JÁ COMO DTO, A PROJEÇÃO DO REPOSITORY) DENTRO DO PAGE
+        // -> TAMANHO TOTAL EH DE 1 LOAN
+        LoanDTO loanDTO = new LoanDTO(id, loan.getCustomer(), loan.getCustomerEmail(), loan.getLoanDate(),
+                loan.getReturned(), book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), true);
+        Page<LoanDTO> page = new PageImpl<>
+                (Arrays.asList(loanDTO), pageRequest, 1);
 
         // QUANDO EU CHAMAR LOANSERVICE.FIND(DTO, PAGEABLE) VOU RETORNAR A PAGE
         // QUE EU CRIEI ACIMA
@@ -271,11 +349,50 @@ class LoanControllerTest {
                 .perform( request )
                 .andExpect( status().isOk() )
                 .andExpect( jsonPath("content", Matchers.hasSize(1)) )
-                .andExpect( jsonPath("totalElements").value(1) )
-                .andExpect( jsonPath("pageable.pageSize").value(100) )
-                .andExpect( jsonPath("pageable.pageNumber").value(0) );
+                .andExpect( jsonPath("content[0].isbn").value("321") )
+                .andExpect( jsonPath("content[0].book.id").value(1) )
+                .andExpect( jsonPath("total").value(1) )
+                .andExpect( jsonPath("size").value(100) )
+                .andExpect( jsonPath("page").value(0) )
+                .andExpect( jsonPath("hasNext").value(false) )
+                .andExpect( jsonPath("pageable").doesNotExist() );
 
 
     }
 
+    @Test
+    @DisplayName("Deve exportar o historico de emprestimos em NDJSON compactado com gzip")
+    @SuppressWarnings("unchecked")
+    void exportLoansGzipTest() throws Exception{
+
+        //cenário
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = Loan.builder().id(1L).customer("Fulano").customerEmail("fulano@email.com")
+                .book(book).loanDate(LocalDate.of(2024, 1, 10)).returned(true).build();
+
+        Mockito.doAnswer( invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(loan);
+            return null;
+        }).when(loanService).exportLoans( Mockito.any() );
+
+        //execução -> o corpo eh escrito no despacho assincrono
+        MvcResult started = mvc.perform( MockMvcRequestBuilders.get(LOAN_API.concat("/export?gzip=true")) )
+                .andReturn();
+
+        MvcResult result = mvc.perform( asyncDispatch(started) )
+                .andExpect( status().isOk() )
+                .andExpect( header().string("Content-Encoding", "gzip") )
+                .andReturn();
+
+        //verificação
+        byte[] body = result.getResponse().getContentAsByteArray();
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+
+        assertThat(lines.size()).isEqualTo(1);
+        assertThat(lines.get(0)).contains("\"isbn\":\"123\"", "\"loanDate\":\"2024-01-10\"", "\"returned\":true");
+    }
 }
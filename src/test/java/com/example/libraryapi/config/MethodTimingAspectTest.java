@@ -0,0 +1,94 @@
+package com.example.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.when;
+
+import com.example.libraryapi.api.mapper.BookMapper;
+import com.example.libraryapi.api.mapper.BookMapperImpl;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.service.BookCount;
+import com.example.libraryapi.service.BookSearchIndex;
+import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.impl.BookServiceImpl;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+// sobe só o aspecto + um service, um mapper e o repository (mock) para conferir os timers
+@SpringBootTest(classes = {MethodTimingAspect.class, MethodTimingAspectTest.Registry.class,
+        BookServiceImpl.class, BookSearchIndex.class, BookCount.class, BookMapperImpl.class})
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@ActiveProfiles("test")
+class MethodTimingAspectTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookMapper mapper;
+
+    @Autowired
+    PrometheusMeterRegistry registry;
+
+    @MockBean
+    BookRepository repository;
+
+    @Test
+    @DisplayName("deve medir service, repository e mapper separadamente")
+    void timersTest(){
+        //cenário
+        Book book = Book.builder().id(1L).isbn("123").title("titulo").author("fulano").build();
+        when( repository.findByIdWithoutCachePut(1L) ).thenReturn( Optional.of(book) );
+
+        //execução
+        service.getById(1L).map(mapper::toDto);
+
+        //verificação
+        assertThat( timer("service", "BookService", "getById", "success").count() ).isEqualTo(1);
+        assertThat( timer("mapper", "BookMapper", "toDto", "success").count() ).isEqualTo(1);
+        assertThat( registry.scrape() )
+                .contains("library_method_seconds_bucket{class=\"BookService\",exception=\"none\",layer=\"service\",method=\"getById\",outcome=\"success\",le=");
+    }
+
+    @Test
+    @DisplayName("deve marcar a chamada que falhou com outcome=error e a exceção")
+    void errorOutcomeTest(){
+        //execução
+        Throwable exception = catchThrowable( () -> service.delete(new Book()) );
+
+        //verificação
+        assertThat( exception ).isInstanceOf(IllegalArgumentException.class);
+        assertThat( registry.get(MethodTimingAspect.METRIC)
+                .tags("class", "BookService", "method", "delete", "outcome", "error",
+                        "exception", "IllegalArgumentException")
+                .timer().count() ).isEqualTo(1);
+    }
+
+    @TestConfiguration
+    static class Registry {
+
+        @Bean
+        PrometheusMeterRegistry prometheusMeterRegistry() {
+            return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        }
+    }
+
+    private Timer timer(String layer, String type, String method, String outcome) {
+        return registry.get(MethodTimingAspect.METRIC)
+                .tags("layer", layer, "class", type, "method", method, "outcome", outcome)
+                .timer();
+    }
+}
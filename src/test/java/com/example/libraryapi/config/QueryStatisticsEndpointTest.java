@@ -0,0 +1,78 @@
+package com.example.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+// limite 0 -> toda execução entra nas amostras de query lenta
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "application.jpa.slow-query.threshold=0ms",
+        "application.jpa.slow-query.samples=2"
+})
+@Import({QueryStatisticsConfig.class, QueryStatisticsEndpoint.class})
+@ActiveProfiles("test")
+class QueryStatisticsEndpointTest {
+
+    @Autowired
+    QueryStatisticsEndpoint endpoint;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    BookRepository repository;
+
+    @BeforeEach
+    void setUp(){
+        entityManager.persistAndFlush(Book.builder().title("Aventuras").author("Fulano").isbn("123").build());
+        endpoint.reset();
+    }
+
+    @Test
+    @DisplayName("deve contar execuções e linhas por query e guardar as ultimas lentas")
+    void reportTest(){
+        //execução
+        repository.findByIsbn("123");
+        repository.findByIsbn("456");
+        repository.existsByIsbn("123");
+
+        //verificação
+        QueryStatisticsEndpoint.Report report = endpoint.report();
+        assertThat(report.isEnabled()).isTrue();
+        assertThat(report.getQueryExecutions()).isEqualTo(3);
+        assertThat(report.getStatements()).isGreaterThanOrEqualTo(3);
+        assertThat(report.getQueries()).hasSize(2);
+        assertThat(report.getQueries())
+                .filteredOn(query -> query.getExecutions() == 2)
+                .singleElement()
+                .satisfies(query -> assertThat(query.getRows()).isEqualTo(1));
+
+        // só as 2 ultimas, da mais recente para a mais antiga
+        assertThat(report.getSlowQueries()).hasSize(2);
+        assertThat(report.getSlowQueries().get(0).getQuery()).startsWith("select generatedAlias0.id"); // existsByIsbn
+        assertThat(report.getSlowQueries().get(1).getRows()).isZero(); // findByIsbn("456")
+    }
+
+    @Test
+    @DisplayName("deve zerar as estatisticas e as amostras no reset")
+    void resetTest(){
+        repository.findByIsbn("123");
+
+        endpoint.reset();
+
+        QueryStatisticsEndpoint.Report report = endpoint.report();
+        assertThat(report.getQueryExecutions()).isZero();
+        assertThat(report.getQueries()).isEmpty();
+        assertThat(report.getSlowQueries()).isEmpty();
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.libraryapi.api.dto.BookDTO;
+import com.example.libraryapi.api.dto.LoanFilterDTO;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.service.BookService;
+import com.example.libraryapi.service.LoanService;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// dois h2 em memória: primary e replica. não existe replicação de verdade
+// -> replicate() copia o primary inteiro (SCRIPT) para o replica, como se ele tivesse alcançado o primary
+// o monitor não roda sozinho (initial-delay de 1h), o teste chama o check()
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.initial-delay=3600000",
+        "application.datasource.replica.max-lag=5s",
+        "application.mail.outbox.initial-delay=3600000",
+        "spring.boot.admin.client.enabled=false"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+@ActiveProfiles("test")
+class ReplicaRoutingTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MockMvc mvc;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @Autowired
+    void setDataSources(@Qualifier(ReplicaDataSourceConfig.PRIMARY) DataSource primary,
+                        @Qualifier(ReplicaDataSourceConfig.REPLICA) DataSource replica) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+    }
+
+    @BeforeEach
+    void setUp() {
+        primary.update("delete from loan");
+        primary.update("update book set active_loan_id = null");
+        primary.update("delete from book");
+
+        // replica vazio (sem tabelas nem heartbeat) -> indisponível, tudo no primary
+        replica.execute("drop all objects");
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaAvailable()).isFalse();
+
+        replicate();
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("deve gravar no primary e ler do replica nas transações readOnly")
+    void readOnlyFromReplicaTest() {
+        //cenário -> o livro só existe no primary até a replicação
+        bookService.save(Book.builder().title("Aventuras").author("Fulano").isbn("replica-1").build());
+        assertThat(count(primary, "book")).isEqualTo(1);
+        assertThat(count(replica, "book")).isZero();
+
+        //execução / verificação
+        assertThat(findByIsbn("replica-1")).isEmpty();
+
+        replicate();
+        assertThat(findByIsbn("replica-1")).hasSize(1);
+        assertThat(loanService.find(LoanFilterDTO.builder().isbn("replica-1").build(), PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("deve ler do primary quando o replica estiver atrasado")
+    void laggingReplicaFallbackTest() {
+        //cenário -> replica parado há 1 minuto
+        bookService.save(Book.builder().title("Aventuras").author("Fulano").isbn("replica-2").build());
+        replica.update("update " + ReplicaLagMonitor.TABLE + " set beat_at = ? where id = 1",
+                Timestamp.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+
+        //execução
+        lagMonitor.check();
+
+        //verificação
+        assertThat(lagMonitor.isReplicaAvailable()).isFalse();
+        assertThat(findByIsbn("replica-2")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("deve ficar no primary numa leitura readOnly dentro de uma transação de escrita")
+    void readOnlyInsideWriteTransactionTest() {
+        List<BookDTO> found = transactionTemplate.execute(status -> {
+            bookService.save(Book.builder().title("Aventuras").author("Fulano").isbn("replica-3").build());
+            return findByIsbn("replica-3");
+        });
+
+        assertThat(found).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("deve gravar o emprestimo no primary depois de ler o livro do replica na mesma requisição")
+    void writeAfterReplicaReadInSameRequestTest() throws Exception {
+        //cenário -> livro replicado (o controller busca o livro pelo isbn antes de salvar)
+        bookService.save(Book.builder().title("Aventuras").author("Fulano").isbn("replica-4").build());
+        replicate();
+        lagMonitor.check();
+
+        //execução
+        mvc.perform(post("/api/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"isbn\":\"replica-4\",\"customer\":\"fulano\",\"customerEmail\":\"fulano@email.com\"}"))
+                .andExpect(status().isCreated());
+
+        //verificação
+        assertThat(count(primary, "loan")).isEqualTo(1);
+        assertThat(count(replica, "loan")).isZero();
+    }
+
+    @Test
+    @DisplayName("deve conferir If-None-Match e If-Match no primary e nunca juntar o ETag novo com a pagina antiga do replica")
+    void readYourWritesWithLaggingReplicaTest() throws Exception {
+        //cenário -> livro replicado e o ETag da primeira versão
+        Book book = (Book) bookService.save(Book.builder().title("Aventuras").author("Fulano").isbn("replica-5").build());
+        replicate();
+        lagMonitor.check();
+        String firstEtag = mvc.perform(get("/api/books/" + book.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //execução -> update no primary; o replica fica com a versão antiga, mas dentro do max-lag
+        String secondEtag = mvc.perform(put("/api/books/" + book.getId())
+                        .header(HttpHeaders.IF_MATCH, firstEtag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Novas Aventuras\",\"author\":\"Fulano\",\"isbn\":\"replica-5\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        lagMonitor.check();
+        assertThat(lagMonitor.isReplicaAvailable()).isTrue();
+        assertThat(replica.queryForObject("select title from book where id = ?", String.class, book.getId()))
+                .isEqualTo("Aventuras");
+
+        //verificação -> nem 304 com o ETag antigo, nem 412 com o novo
+        assertThat(secondEtag).isNotEqualTo(firstEtag);
+        mvc.perform(get("/api/books/" + book.getId()).header(HttpHeaders.IF_NONE_MATCH, firstEtag))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, secondEtag))
+                .andExpect(jsonPath("title").value("Novas Aventuras"));
+        mvc.perform(put("/api/books/" + book.getId())
+                        .header(HttpHeaders.IF_MATCH, secondEtag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Ultimas Aventuras\",\"author\":\"Fulano\",\"isbn\":\"replica-5\"}"))
+                .andExpect(status().isOk());
+
+        //verificação -> o emprestimo muda o ETag da lista de emprestimos do livro
+        String loansEtag = mvc.perform(get("/api/books/" + book.getId() + "/loans"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(post("/api/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"isbn\":\"replica-5\",\"customer\":\"fulano\",\"customerEmail\":\"fulano@email.com\"}"))
+                .andExpect(status().isCreated());
+        // replica atrasado -> a pagina sai sem o emprestimo e com o ETag dela (o antigo), não o do primary
+        mvc.perform(get("/api/books/" + book.getId() + "/loans").header(HttpHeaders.IF_NONE_MATCH, loansEtag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, loansEtag));
+
+        replicate();
+        lagMonitor.check();
+        String newLoansEtag = mvc.perform(get("/api/books/" + book.getId() + "/loans").header(HttpHeaders.IF_NONE_MATCH, loansEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].customer").value("fulano"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newLoansEtag).isNotEqualTo(loansEtag);
+    }
+
+    private List<BookDTO> findByIsbn(String isbn) {
+        return bookService.find(Book.builder().isbn(isbn).build(), PageRequest.of(0, 10)).getContent();
+    }
+
+    private long count(JdbcTemplate database, String table) {
+        return database.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    // o replica "alcança" o primary: esquema e dados copiados do zero
+    private void replicate() {
+        List<String> script = primary.queryForList("script", String.class);
+        replica.execute("drop all objects");
+        script.forEach(replica::execute);
+    }
+}
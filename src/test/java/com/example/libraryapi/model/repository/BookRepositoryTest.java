@@ -1,7 +1,16 @@
 package com.example.libraryapi.model.repository;
 
+import com.example.libraryapi.api.dto.BookDTO;
 import com.example.libraryapi.model.entity.Book;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.DisplayName;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +19,12 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
 @ExtendWith(SpringExtension.class)
@@ -105,6 +118,192 @@ class BookRepositoryTest {
         assertThat(deletedBook).isNull();
     }
 
+    @Test
+    @DisplayName("Deve recusar um segundo livro com o mesmo isbn pela constraint única")
+    void uniqueIsbnTest(){
+        //cenário
+        repository.saveAndFlush(createNewBook());
+
+        //execução
+        Throwable exception = catchThrowable(() -> repository.saveAndFlush(createNewBook()));
+
+        //verificação
+        assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+        // o BookServiceImpl usa o nome da constraint para traduzir em "Isbn já cadastrado."
+        assertThat(((ConstraintViolationException) exception.getCause()).getConstraintName().toLowerCase())
+                .contains(Book.UK_ISBN);
+    }
+
+    @Test
+    @DisplayName("Deve salvar livros em lote e informar os isbns já cadastrados")
+    void saveInBatchTest(){
+        //cenário
+        List<Book> books = Arrays.asList(
+                Book.builder().title("a").author("fulano").isbn("1").build(),
+                Book.builder().title("b").author("fulano").isbn("2").build());
+
+        //execução
+        repository.saveInBatch(books);
+
+        //verificação
+        assertThat(books).allMatch(book -> book.getId() != null);
+        assertThat(repository.count()).isEqualTo(2);
+        assertThat(repository.findExistingIsbns(Arrays.asList("1", "3"))).containsExactly("1");
+    }
+
+    @Test
+    @DisplayName("Deve marcar e liberar o emprestimo ativo do livro")
+    void activeLoanMarkerTest(){
+        //cenário
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        //execução e verificação -> marca, não marca de novo e libera só com o mesmo emprestimo
+        assertThat(repository.existsByIdAndActiveLoanIdIsNotNull(book.getId())).isFalse();
+        assertThat(repository.markActiveLoan(book.getId(), 10L)).isEqualTo(1);
+        assertThat(repository.existsByIdAndActiveLoanIdIsNotNull(book.getId())).isTrue();
+        assertThat(repository.markActiveLoan(book.getId(), 11L)).isZero();
+        assertThat(repository.clearActiveLoan(book.getId(), 11L)).isZero();
+        assertThat(repository.clearActiveLoan(book.getId(), 10L)).isEqualTo(1);
+        assertThat(repository.existsByIdAndActiveLoanIdIsNotNull(book.getId())).isFalse();
+        // só os updates que mudaram o livro contam versão (ETag)
+        assertThat(repository.findVersionById(book.getId())).contains(2L);
+    }
+
+    @Test
+    @DisplayName("Deve aceitar marcar de novo o mesmo emprestimo ativo")
+    void markSameActiveLoanTest(){
+        //cenário -> livro já emprestado pelo emprestimo 10
+        Book book = createNewBook();
+        entityManager.persistAndFlush(book);
+        repository.markActiveLoan(book.getId(), 10L);
+
+        //execução -> reenvio da reabertura do mesmo emprestimo
+        int marked = repository.markActiveLoan(book.getId(), 10L);
+
+        //verificação -> não eh conflito; outro emprestimo continua recusado
+        assertThat(marked).isEqualTo(1);
+        assertThat(repository.markActiveLoan(book.getId(), 11L)).isZero();
+        assertThat(repository.clearActiveLoan(book.getId(), 10L)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve percorrer os livros por keyset (title, id) sem repetir nem pular")
+    void findAfterTest(){
+        //cenário -> 5 livros, dois com o mesmo titulo para testar o desempate pelo id
+        String[] titles = {"c", "a", "b", "b", "d"};
+        for (int i = 0; i < titles.length; i++) {
+            entityManager.persist(Book.builder().title(titles[i]).author("fulano").isbn("isbn-" + i).build());
+        }
+        Example<Book> all = Example.of(new Book());
+
+        //execução -> paginas de 2
+        Slice<Book> first = repository.findAfter(all, null, null, 2);
+        Book lastOfFirst = first.getContent().get(1);
+        Slice<Book> second = repository.findAfter(all, lastOfFirst.getTitle(), lastOfFirst.getId(), 2);
+        Book lastOfSecond = second.getContent().get(1);
+        Slice<Book> third = repository.findAfter(all, lastOfSecond.getTitle(), lastOfSecond.getId(), 2);
+
+        //verificação
+        assertThat(first.getContent()).extracting(Book::getTitle).containsExactly("a", "b");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(Book::getTitle).containsExactly("b", "c");
+        assertThat(third.getContent()).extracting(Book::getTitle).containsExactly("d");
+        assertThat(third.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve paginar por OFFSET sem count, sabendo da proxima pagina pelo size + 1")
+    void findSliceTest(){
+        //cenário -> 3 livros do fulano e 1 do ciclano
+        String[] titles = {"c", "a", "b"};
+        for (int i = 0; i < titles.length; i++) {
+            entityManager.persist(Book.builder().title(titles[i]).author("fulano").isbn("isbn-" + i).build());
+        }
+        entityManager.persist(Book.builder().title("d").author("ciclano").isbn("isbn-3").build());
+        Example<Book> byAuthor = Example.of(Book.builder().author("fulano").build());
+        PageRequest byTitle = PageRequest.of(0, 2, Sort.by("title"));
+
+        //execução
+        Slice<BookDTO> first = repository.findDtoSlice(byAuthor, byTitle);
+        Slice<BookDTO> second = repository.findDtoSlice(byAuthor, byTitle.next());
+        Slice<BookDTO> all = repository.findDtoSlice(Example.of(new Book()), PageRequest.of(0, 10));
+
+        //verificação
+        assertThat(first.getContent()).extracting(BookDTO::getTitle).containsExactly("a", "b");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(BookDTO::getTitle).containsExactly("c");
+        assertThat(second.hasNext()).isFalse();
+        assertThat(all.getContent()).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Deve filtrar livros direto para o BookDTO, sem entidades no contexto de persistencia")
+    void findDtosTest(){
+        //cenário -> 3 livros do fulano (um emprestado) e 1 do ciclano
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Book.builder().title("titulo " + i).author("fulano").isbn("isbn-" + i)
+                    .activeLoanId(i == 0 ? 99L : null).build());
+        }
+        entityManager.persist(Book.builder().title("outro").author("ciclano").isbn("isbn-3").build());
+        entityManager.flush();
+        entityManager.clear();
+        Example<Book> byAuthor = Example.of(Book.builder().author("fulano").build());
+
+        //execução
+        Page<BookDTO> first = repository.findDtos(byAuthor, PageRequest.of(0, 2, Sort.by("title")));
+        Page<BookDTO> all = repository.findDtos(Example.of(new Book()), PageRequest.of(0, 10));
+
+        //verificação -> disponibilidade calculada no select e nada gerenciado
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getContent()).extracting(BookDTO::getTitle).containsExactly("titulo 0", "titulo 1");
+        assertThat(first.getContent()).extracting(BookDTO::getAvailable).containsExactly(false, true);
+        assertThat(all.getTotalElements()).isEqualTo(4);
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve buscar os livros pelos ids direto para o BookDTO")
+    void findDtoByIdInTest(){
+        //cenário
+        Book free = entityManager.persist(Book.builder().title("livre").author("fulano").isbn("1").build());
+        Book loaned = entityManager.persist(Book.builder().title("emprestado").author("fulano").isbn("2").activeLoanId(7L).build());
+        entityManager.persist(Book.builder().title("fora").author("fulano").isbn("3").build());
+
+        //execução
+        List<BookDTO> books = repository.findDtoByIdIn(Arrays.asList(free.getId(), loaned.getId()));
+
+        //verificação
+        assertThat(books).extracting(BookDTO::getTitle).containsExactlyInAnyOrder("livre", "emprestado");
+        assertThat(books).filteredOn(book -> book.getId().equals(loaned.getId()))
+                .extracting(BookDTO::getAvailable).containsExactly(false);
+    }
+
+    @Test
+    @DisplayName("Deve percorrer todos os livros em ordem de id desanexando cada um")
+    void streamAllTest(){
+        //cenário
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Book.builder().title("titulo " + i).author("fulano").isbn("isbn-" + i).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        //execução -> guardando se o livro ainda estava no contexto depois do anterior
+        List<Book> books = new ArrayList<>();
+        List<Boolean> previousManaged = new ArrayList<>();
+        repository.streamAll(book -> {
+            if (!books.isEmpty()) {
+                previousManaged.add(entityManager.getEntityManager().contains(books.get(books.size() - 1)));
+            }
+            books.add(book);
+        });
+
+        //verificação
+        assertThat(books).extracting(Book::getIsbn).containsExactly("isbn-0", "isbn-1", "isbn-2");
+        assertThat(previousManaged).containsOnly(false);
+    }
+
     private Book createNewBook(){
         return Book.builder().title("aventuras").author("fulano").isbn("123").build();
     }
@@ -2,10 +2,14 @@ package com.example.libraryapi.model.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.support.SqlStatementCounter;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import org.hibernate.Session;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,38 +18,22 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest // anotação teste de integração com banco em memória
+@DataJpaTest(properties = SqlStatementCounter.PROPERTY) // anotação teste de integração com banco em memória
 public class LoanRepositoryTest {
 
     @Autowired
     private LoanRepository repository;
     @Autowired
     private TestEntityManager entityManager;
-
-    @Test
-    @DisplayName("deve verificar se existe empretimo nao devolvido p/ o livro")
-    void existsByBookAndNotReturned(){
-        //cenário
-        Book book = createNewBook();
-        entityManager.persist(  book  );
-
-        Loan loan = Loan.builder().book( book ).customer("fulano").loanDate(LocalDate.now()).build();
-        entityManager.persist(  loan  );
-
-
-        //execução -> o livro está emprestado
-        boolean exists = repository.existsByBookAndNotReturned(book);
-
-
-        //verificação
-        assertThat( exists ).isTrue();
-
-    }
+    @Autowired
+    private BookRepository bookRepository;
 
     @Test
     @DisplayName("deve buscar emprestimo pelo isbn do livro ou customer")
@@ -71,56 +59,238 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("deve obter emprestimos cuja date de empretimo for" +
-            " menor ou igual a tres dias atras e não retornados")
-    public void findByLoanDateLessThanAndNotReturnedTest(){
-        // cenário - criando um loan de dias atrás e salvando
+    @DisplayName("deve buscar uma pagina de emprestimos com os livros sem um select por emprestimo")
+    public void findByBookIsbnOrCustomerWithoutNPlusOneTest(){
+
+        //cenário -> 10 emprestimos do mesmo customer, cada um com um livro diferente
+        for (int i = 0; i < 10; i++) {
+            Book book = Book.builder().title("aventuras " + i).author("fulano").isbn("isbn-" + i).build();
+            entityManager.persist(  book  );
+            entityManager.persist(  Loan.builder().book( book ).customer("fulano").loanDate(LocalDate.now()).build()  );
+        }
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementCounter.reset();
+
+        //execução -> tocando no livro de cada emprestimo como o controller faz
+        Page<Loan> pageResult = repository.findByBookIsbnOrCustomer("nenhum", "fulano", PageRequest.of(0, 5));
+        pageResult.getContent().forEach( loan -> loan.getBook().getTitle() );
+
+        //verificação -> só o select da pagina e o count
+        assertThat( pageResult.getContent() ).hasSize(5);
+        assertThat( pageResult.getTotalElements() ).isEqualTo(10);
+        SqlStatementCounter.assertAtMost(2);
+    }
+
+    @Test
+    @DisplayName("deve buscar emprestimos pelo isbn ou customer sem a query de count")
+    public void findDtoSliceByBookIsbnOrCustomerTest(){
+
+        //cenário -> 3 emprestimos do fulano
         Book book = createNewBook();
+        entityManager.persist(  book  );
+        for (int days = 3; days > 0; days--) {
+            entityManager.persist(  Loan.builder().book( book ).customer("fulano")
+                    .loanDate(LocalDate.now().minusDays(days)).build()  );
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        //execução
+        SqlStatementCounter.reset();
+        Slice<LoanDTO> first = repository.findDtoSliceByBookIsbnOrCustomer("nenhum", "fulano", PageRequest.of(0, 2));
+
+        //verificação -> um select só (join, sem count)
+        SqlStatementCounter.assertAtMost(1);
+        assertThat( first.getContent() ).hasSize(2);
+        assertThat( first.hasNext() ).isTrue();
+        assertThat( repository.findDtoSliceByBookIsbnOrCustomer("123", null, PageRequest.of(1, 2)).hasNext() ).isFalse();
+    }
 
-        entityManager.persist( book );
+    @Test
+    @DisplayName("deve buscar emprestimos pelo isbn ou customer direto para o LoanDTO, sem entidades gerenciadas")
+    public void findDtoByBookIsbnOrCustomerTest(){
 
-        Loan loan = Loan.builder()
-                .book( book )
-                .customer("fulano")
-                .loanDate( LocalDate.now().minusDays(5) )
-                .build();
+        //cenário -> um emprestimo em aberto (o livro aponta para ele) e um de outro cliente
+        Book book = createNewBook();
+        entityManager.persist(  book  );
+        Loan loan = entityManager.persist(  Loan.builder().book( book ).customer("fulano").customerEmail("fulano@email.com")
+                .loanDate(LocalDate.now()).returned(false).build()  );
+        book.setActiveLoanId( loan.getId() );
+        Book other = Book.builder().title("outro").author("ciclano").isbn("456").build();
+        entityManager.persist(  other  );
+        entityManager.persist(  Loan.builder().book( other ).customer("ciclano").loanDate(LocalDate.now()).build()  );
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementCounter.reset();
+
+        //execução
+        Page<LoanDTO> pageResult = repository.findDtoByBookIsbnOrCustomer("123", "fulano", PageRequest.of(0, 10));
+
+        //verificação -> o livro aninhado vem da mesma linha e nada fica no contexto de persistencia
+        SqlStatementCounter.assertAtMost(1);
+        assertThat( pageResult.getTotalElements() ).isEqualTo(1);
+        LoanDTO dto = pageResult.getContent().get(0);
+        assertThat( dto.getId() ).isEqualTo( loan.getId() );
+        assertThat( dto.getIsbn() ).isEqualTo("123");
+        assertThat( dto.getCustomerEmail() ).isEqualTo("fulano@email.com");
+        assertThat( dto.getBook().getId() ).isEqualTo( book.getId() );
+        assertThat( dto.getBook().getAvailable() ).isFalse();
+        assertThat( entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount() ).isZero();
+    }
 
-        entityManager.persist(  loan  );
+    @Test
+    @DisplayName("deve buscar os emprestimos de um livro direto para o LoanDTO respeitando a ordenação")
+    public void findDtoByBookIdTest(){
 
+        //cenário
+        Book book = createNewBook();
+        entityManager.persist(  book  );
+        for (int days = 1; days <= 3; days++) {
+            entityManager.persist(  Loan.builder().book( book ).customer("fulano " + days)
+                    .loanDate(LocalDate.now().minusDays(days)).returned(true).build()  );
+        }
 
-        // execução - chamando diretamente o método do repositório
-        List<Loan> returned = repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+        //execução
+        Page<LoanDTO> pageResult = repository.findDtoByBookId(book.getId(), PageRequest.of(0, 2, Sort.by("loanDate")));
 
+        //verificação
+        assertThat( pageResult.getTotalElements() ).isEqualTo(3);
+        assertThat( pageResult.getContent() ).extracting(LoanDTO::getCustomer).containsExactly("fulano 3", "fulano 2");
+        assertThat( pageResult.getContent() ).allSatisfy( dto -> assertThat( dto.getBook().getAvailable() ).isTrue() );
+    }
 
-        // verificação
-        assertThat( returned ).hasSize(1).contains(loan);
+    @Test
+    @DisplayName("deve paginar emprestimos por keyset (loanDate, id)")
+    public void findSliceByBookIsbnOrCustomerAfterTest(){
 
+        //cenário -> 3 emprestimos do fulano em datas diferentes
+        Book book = createNewBook();
+        entityManager.persist(  book  );
+        for (int days = 3; days > 0; days--) {
+            entityManager.persist(  Loan.builder().book( book ).customer("fulano")
+                    .loanDate(LocalDate.now().minusDays(days)).build()  );
+        }
+
+        //execução
+        Slice<Loan> first = repository.findFirstSliceByBookIsbnOrCustomer("nenhum", "fulano", PageRequest.of(0, 2));
+        Loan last = first.getContent().get(1);
+        Slice<Loan> second = repository.findSliceByBookIsbnOrCustomerAfter
+                ("nenhum", "fulano", last.getLoanDate(), last.getId(), PageRequest.of(0, 2));
+
+        //verificação -> do mais antigo para o mais recente
+        assertThat( first.getContent() ).extracting(Loan::getLoanDate)
+                .containsExactly(LocalDate.now().minusDays(3), LocalDate.now().minusDays(2));
+        assertThat( first.hasNext() ).isTrue();
+        assertThat( second.getContent() ).extracting(Loan::getLoanDate)
+                .containsExactly(LocalDate.now().minusDays(1));
+        assertThat( second.hasNext() ).isFalse();
     }
 
     @Test
-    @DisplayName(" não retornar vazio, pois não há nenhum atrasado")
-    public void notFindByLoanDateLessThanAndNotReturnedTest(){
-        // cenário - criando um loan de dias atrás e salvando
+    @DisplayName("deve buscar atrasados em blocos ordenados por email do cliente")
+    public void findLateLoansAfterTest(){
+
+        //cenário -> 3 atrasados (um sem email), 1 devolvido e 1 em dia
         Book book = createNewBook();
+        entityManager.persist(  book  );
+        LocalDate late = LocalDate.now().minusDays(5);
+        entityManager.persist(  Loan.builder().book( book ).customerEmail("b@email.com").loanDate(late).build()  );
+        entityManager.persist(  Loan.builder().book( book ).customerEmail("a@email.com").loanDate(late).build()  );
+        entityManager.persist(  Loan.builder().book( book ).customerEmail("a@email.com").loanDate(late).build()  );
+        entityManager.persist(  Loan.builder().book( book ).loanDate(late).build()  );
+        entityManager.persist(  Loan.builder().book( book ).customerEmail("c@email.com").loanDate(late).returned(true).build()  );
+        entityManager.persist(  Loan.builder().book( book ).customerEmail("d@email.com").loanDate(LocalDate.now()).build()  );
+
+        //execução
+        LocalDate threshold = LocalDate.now().minusDays(4);
+        List<Loan> first = repository.findLateLoansAfter(threshold, "", 0L, PageRequest.of(0, 2));
+        Loan last = first.get(1);
+        List<Loan> second = repository.findLateLoansAfter(threshold, last.getCustomerEmail(), last.getId(), PageRequest.of(0, 2));
 
-        entityManager.persist( book );
+        //verificação
+        assertThat( first ).extracting(Loan::getCustomerEmail).containsExactly("a@email.com", "a@email.com");
+        assertThat( second ).extracting(Loan::getCustomerEmail).containsExactly("b@email.com");
+    }
 
-        Loan loan = Loan.builder()
-                .book( book )
-                .customer("fulano")
-                .loanDate( LocalDate.now() )
-                .build();
+    @Test
+    @DisplayName("deve marcar o aviso de atraso uma vez só e apenas para emprestimo em aberto")
+    public void markOverdueNotifiedTest(){
 
-        entityManager.persist(  loan  );
+        //cenário
+        Book book = createNewBook();
+        entityManager.persist(  book  );
+        Loan open = entityManager.persist(  Loan.builder().book( book ).customerEmail("a@email.com")
+                .loanDate(LocalDate.now().minusDays(5)).build()  );
+        Loan returned = entityManager.persist(  Loan.builder().book( book ).customerEmail("b@email.com")
+                .loanDate(LocalDate.now().minusDays(5)).returned(true).build()  );
+        Loan other = entityManager.persist(  Loan.builder().book( book ).customerEmail("c@email.com")
+                .loanDate(LocalDate.now().minusDays(5)).overdueNotifiedAt(LocalDateTime.now()).build()  );
+
+        //execução e verificação -> keyset: depois do id do open não sobra nenhum
+        assertThat( repository.findOpenLoansToNotifyAfter(0L, PageRequest.of(0, 10)) ).containsExactly(open);
+        assertThat( repository.findOpenLoansToNotifyAfter(open.getId(), PageRequest.of(0, 10)) ).isEmpty();
+        assertThat( repository.markOverdueNotified(open.getId(), LocalDateTime.now()) ).isEqualTo(1);
+        assertThat( repository.markOverdueNotified(open.getId(), LocalDateTime.now()) ).isZero();
+        assertThat( repository.markOverdueNotified(returned.getId(), LocalDateTime.now()) ).isZero();
+
+        entityManager.clear();
+        assertThat( repository.findOpenLoansToNotifyAfter(0L, PageRequest.of(0, 10)) ).isEmpty();
+        assertThat( repository.findLateLoansAfter(LocalDate.now().minusDays(4), "", 0L, PageRequest.of(0, 10)) ).isEmpty();
+    }
 
+    @Test
+    @DisplayName("deve devolver um lote de emprestimos e liberar os livros com um update cada")
+    public void updateReturnedTest(){
+
+        //cenário -> dois livros emprestados
+        Book first = entityManager.persist( createNewBook() );
+        Book second = entityManager.persist( Book.builder().title("outro").author("ciclano").isbn("456").build() );
+        Loan firstLoan = entityManager.persist( Loan.builder().book( first ).customer("fulano").loanDate(LocalDate.now()).build() );
+        Loan secondLoan = entityManager.persist( Loan.builder().book( second ).customer("fulano").loanDate(LocalDate.now()).build() );
+        first.setActiveLoanId( firstLoan.getId() );
+        second.setActiveLoanId( secondLoan.getId() );
+        entityManager.flush();
+        entityManager.clear();
+        List<Long> ids = List.of(firstLoan.getId(), secondLoan.getId());
+
+        //execução
+        SqlStatementCounter.reset();
+        List<Loan> loans = repository.findAllWithBookByIdIn(ids);
+        int updated = repository.updateReturned(ids, true);
+        int released = bookRepository.clearActiveLoans(List.of(first.getId(), second.getId()), ids);
+
+        //verificação -> 1 select com os livros + 2 updates, independente do tamanho do lote
+        SqlStatementCounter.assertAtMost(3);
+        assertThat( loans ).extracting(loan -> loan.getBook().getIsbn()).containsExactlyInAnyOrder("123", "456");
+        assertThat( updated ).isEqualTo(2);
+        assertThat( released ).isEqualTo(2);
+
+        entityManager.clear();
+        assertThat( entityManager.find(Loan.class, firstLoan.getId()).getReturned() ).isTrue();
+        assertThat( entityManager.find(Book.class, second.getId()).getActiveLoanId() ).isNull();
+    }
 
-        // execução - chamando diretamente o método do repositório
-        List<Loan> returned = repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+    @Test
+    @DisplayName("deve mudar a versão dos emprestimos do livro a cada cadastro ou devolução")
+    public void findLoansVersionByBookIdTest(){
 
+        //cenário -> livro sem emprestimos
+        Book book = entityManager.persist( createNewBook() );
+        entityManager.flush();
+        LoanRepository.LoansVersion empty = repository.findLoansVersionByBookId( book.getId() ).orElseThrow();
 
-        // verificação
-        assertThat( returned ).isEmpty();
+        //execução -> um emprestimo e depois a devolução em lote
+        Loan loan = entityManager.persistAndFlush( Loan.builder().book( book ).customer("fulano").loanDate(LocalDate.now()).build() );
+        LoanRepository.LoansVersion loaned = repository.findLoansVersionByBookId( book.getId() ).orElseThrow();
+        repository.updateReturned(List.of(loan.getId()), true);
+        LoanRepository.LoansVersion returned = repository.findLoansVersionByBookId( book.getId() ).orElseThrow();
 
+        //verificação
+        assertThat( empty.getLoans() ).isZero();
+        assertThat( loaned.getLoans() ).isEqualTo(1);
+        assertThat( returned.getLoanVersions() ).isEqualTo( loaned.getLoanVersions() + 1 );
+        assertThat( repository.findLoansVersionByBookId( 999L ) ).isEmpty();
     }
 
     private Book createNewBook(){
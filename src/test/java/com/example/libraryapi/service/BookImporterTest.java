@@ -0,0 +1,90 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.libraryapi.api.dto.BookImportReportDTO;
+import com.example.libraryapi.exception.BusinessException;
+import com.example.libraryapi.model.entity.Book;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+class BookImporterTest {
+
+    @MockBean
+    BookService service;
+
+    BookImporter importer;
+
+    // lotes de 2 livros e no maximo 2 erros detalhados no relatório
+    @BeforeEach
+    void setUp(){
+        importer = new BookImporter(service, 2, 2);
+    }
+
+    @Test
+    @DisplayName("deve contar todas as linhas recusadas mas guardar só as primeiras")
+    void maxErrorsTest(){
+        //cenário -> 5 linhas invalidas
+        Iterator<BookImporter.Row> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(line -> new BookImporter.Row(line, null, Collections.singletonList("invalid json")))
+                .iterator();
+
+        //execução
+        BookImportReportDTO report = importer.importBooks(rows);
+
+        //verificação
+        assertThat(report.getReceived()).isEqualTo(5);
+        assertThat(report.getRejected()).isEqualTo(5);
+        assertThat(report.getErrors()).extracting(BookImportReportDTO.RowError::getLine).containsExactly(1L, 2L);
+        verify(service, Mockito.never()).importBooks(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("deve seguir livro a livro quando o lote falhar e reportar a linha recusada pelo banco")
+    void fallbackReportsIntegrityViolationTest(){
+        //cenário -> os lotes falham; no livro a livro o 002 já existe e o 003 viola outra constraint
+        Book first = Book.builder().isbn("001").title("Aventuras").author("Fulano").build();
+        Book duplicated = Book.builder().isbn("002").title("Aventuras").author("Fulano").build();
+        Book invalid = Book.builder().isbn("003").title("Aventuras").author("Fulano").build();
+        Book last = Book.builder().isbn("004").title("Aventuras").author("Fulano").build();
+
+        when(service.importBooks(Mockito.anyList())).thenThrow(new DataIntegrityViolationException("lote"));
+        when(service.save(duplicated)).thenThrow(new BusinessException("Isbn já cadastrado."));
+        when(service.save(invalid)).thenThrow(new DataIntegrityViolationException("title too long"));
+
+        List<BookImporter.Row> rows = List.of(
+                new BookImporter.Row(1, first, Collections.emptyList()),
+                new BookImporter.Row(2, duplicated, Collections.emptyList()),
+                new BookImporter.Row(3, invalid, Collections.emptyList()),
+                new BookImporter.Row(4, last, Collections.emptyList()));
+
+        //execução
+        BookImportReportDTO report = importer.importBooks(rows.iterator());
+
+        //verificação -> a violação do 003 não interrompe a importação: o 004 ainda entra
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.getErrors())
+                .extracting(BookImportReportDTO.RowError::getLine)
+                .containsExactly(2L, 3L);
+        assertThat(report.getErrors().get(1).getErrors().get(0)).contains("title too long");
+        verify(service, times(2)).importBooks(Mockito.anyList());
+        verify(service, times(4)).save(Mockito.any(Book.class));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp(){
+        index = new BookSearchIndex(Mockito.mock(BookRepository.class));
+        index.put(book(1L, "Duna", "Frank Herbert"));
+        index.put(book(2L, "O Messias de Duna", "Frank Herbert"));
+        index.put(book(3L, "Dunas do Sul", "Maria Souza"));
+        index.put(book(4L, "Fundação", "Isaac Asimov"));
+    }
+
+    @Test
+    @DisplayName("deve achar substring ignorando maiusculas e ordenar por relevancia")
+    void rankingTest(){
+        //execução
+        BookSearchIndex.Result result = index.search("DUNA", null, 0, 10);
+
+        //verificação -> igual, começa com, começo de palavra
+        assertThat(result.getBookIds()).containsExactly(1L, 3L, 2L);
+        assertThat(result.getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("deve combinar titulo e autor e paginar")
+    void titleAndAuthorTest(){
+        //execução
+        BookSearchIndex.Result result = index.search("duna", "herbert", 1, 1);
+
+        //verificação
+        assertThat(result.getBookIds()).containsExactly(2L);
+        assertThat(result.getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("deve buscar termos curtos sem trigramas")
+    void shortQueryTest(){
+        assertThat(index.search("du", null, 0, 10).getTotal()).isEqualTo(3);
+        assertThat(index.search(null, "as", 0, 10).getBookIds()).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("deve refletir alteração e remoção de livros")
+    void updateAndRemoveTest(){
+        //execução
+        index.put(book(1L, "Neuromancer", "William Gibson"));
+        index.remove(3L);
+
+        //verificação
+        assertThat(index.search("duna", null, 0, 10).getBookIds()).containsExactly(2L);
+        assertThat(index.search("neuro", null, 0, 10).getBookIds()).containsExactly(1L);
+        assertThat(index.search("xyz", null, 0, 10).getTotal()).isZero();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("deve compactar os docs apagados e continuar achando os livros vivos")
+    void compactTest(){
+        //execução -> o mesmo livro alterado muitas vezes e um livro incluido e removido
+        for (int i = 0; i < 1000; i++) {
+            index.put(book(1L, "Duna " + i, "Frank Herbert"));
+            index.put(book(5L, "Temporario", "Fulano"));
+            index.remove(5L);
+        }
+
+        //verificação -> só os vivos ocupam espaço (mais os apagados abaixo do limite)
+        assertThat(index.capacity()).isLessThan(200);
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.search("duna 999", null, 0, 10).getBookIds()).containsExactly(1L);
+        assertThat(index.search("duna 998", null, 0, 10).getTotal()).isZero();
+        assertThat(index.search("temporario", null, 0, 10).getTotal()).isZero();
+        assertThat(index.search("duna", "herbert", 0, 10).getBookIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("deve devolver a mesma pagina com o heap limitado que ordenando tudo")
+    void topHitsPagingTest(){
+        //cenário
+        for (long id = 10; id < 60; id++) {
+            index.put(book(id, "Duna volume " + id, "Autor"));
+        }
+
+        //execução
+        BookSearchIndex.Result first = index.search("duna", null, 0, 3);
+        BookSearchIndex.Result second = index.search("duna", null, 3, 3);
+
+        //verificação -> igual, começa com (mais curto, depois id), ...
+        assertThat(first.getBookIds()).containsExactly(1L, 3L, 10L);
+        assertThat(second.getBookIds()).containsExactly(11L, 12L, 13L);
+        assertThat(first.getTotal()).isEqualTo(53);
+        assertThat(index.search("duna", null, 100, 3).getBookIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("não deve carregar nem indexar com o indice desligado")
+    void disabledTest(){
+        //cenário
+        BookSearchIndex disabled = new BookSearchIndex(Mockito.mock(BookRepository.class));
+        ReflectionTestUtils.setField(disabled, "enabled", false);
+
+        //execução
+        disabled.load();
+        disabled.put(book(1L, "Duna", "Frank Herbert"));
+
+        //verificação -> o BookServiceImpl só usa o indice pronto
+        assertThat(disabled.isReady()).isFalse();
+        assertThat(disabled.size()).isZero();
+    }
+
+    private static Book book(Long id, String title, String author) {
+        return Book.builder().id(id).title(title).author(author).isbn(String.valueOf(id)).build();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.config.SecondLevelCacheEndpoint;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.model.repository.LoanRepository;
+import com.example.libraryapi.service.impl.BookServiceImpl;
+import com.example.libraryapi.service.impl.LoanServiceImpl;
+import java.time.LocalDate;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// sem a transação do teste: cada chamada ao repository/service abre a sua sessão,
+// então uma segunda leitura só evita o banco se vier do second-level cache
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({BookServiceImpl.class, BookSearchIndex.class, BookCount.class, LoanServiceImpl.class, SecondLevelCacheEndpoint.class})
+@ActiveProfiles("test")
+class BookSecondLevelCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @MockBean
+    OverdueLoanTracker overdueLoanTracker;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    SecondLevelCacheEndpoint endpoint;
+
+    Statistics statistics;
+
+    Book book;
+
+    @BeforeEach
+    void setUp(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        book = repository.save(Book.builder().title("Aventuras").author("Fulano").isbn("123").build());
+
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown(){
+        loanRepository.deleteAll();
+        repository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("deve ler o livro por id do second-level cache a partir da segunda sessão")
+    void entityCacheTest(){
+        //execução
+        repository.findById(book.getId());
+        long statements = statistics.getPrepareStatementCount();
+        Book cached = repository.findById(book.getId()).get();
+
+        //verificação
+        assertThat(cached.getTitle()).isEqualTo("Aventuras");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(1);
+        assertThat(entityManagerFactory.getCache().contains(Book.class, book.getId())).isTrue();
+    }
+
+    @Test
+    @DisplayName("deve guardar o resultado do findByIsbn no query cache")
+    void isbnQueryCacheTest(){
+        //execução
+        repository.findByIsbn("123");
+        long statements = statistics.getPrepareStatementCount();
+        Book cached = repository.findByIsbn("123").get();
+
+        //verificação
+        assertThat(cached.getId()).isEqualTo(book.getId());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getQueryRegionStatistics(Book.ISBN_QUERY_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("não deve guardar no cache o livro das leituras que podem vir do replica")
+    void replicaReadsDoNotPutTest(){
+        //execução -> leituras readOnly (replica quando houver)
+        service.getById(book.getId());
+        service.getBookByIsbn("123");
+
+        //verificação -> nem o livro nem o isbn entram no cache
+        Cache cache = entityManagerFactory.getCache();
+        assertThat(cache.contains(Book.class, book.getId())).isFalse();
+        assertThat(statistics.getQueryRegionStatistics(Book.ISBN_QUERY_REGION).getPutCount()).isZero();
+
+        //execução -> a leitura do primary (PUT/DELETE) guarda e as do replica passam a usar
+        service.getByIdForUpdate(book.getId());
+        Book cached = service.getById(book.getId()).get();
+
+        //verificação
+        assertThat(cached.getTitle()).isEqualTo("Aventuras");
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("não deve devolver o titulo antigo do cache depois do update")
+    void updateRefreshesCacheTest(){
+        //cenário -> livro e isbn no cache
+        Book loaded = repository.findByIsbn("123").get();
+
+        //execução
+        loaded.setTitle("Novas Aventuras");
+        service.update(loaded);
+
+        //verificação
+        assertThat(repository.findById(book.getId()).get().getTitle()).isEqualTo("Novas Aventuras");
+        assertThat(repository.findByIsbn("123").get().getTitle()).isEqualTo("Novas Aventuras");
+    }
+
+    @Test
+    @DisplayName("não deve achar no cache o livro deletado, nem por id nem por isbn")
+    void deleteEvictsCacheTest(){
+        //cenário
+        Book loaded = repository.findByIsbn("123").get();
+        assertThat(entityManagerFactory.getCache().contains(Book.class, book.getId())).isTrue();
+
+        //execução
+        service.delete(loaded);
+        statistics.clear();
+
+        //verificação -> READ_WRITE deixa só um lock na região no lugar do livro: nenhuma leitura sai do cache
+        assertThat(repository.findByIsbn("123")).isEmpty();
+        assertThat(repository.findById(book.getId())).isEmpty();
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isZero();
+        assertThat(statistics.getQueryRegionStatistics(Book.ISBN_QUERY_REGION).getHitCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve tirar do cache só o livro emprestado, não a região inteira")
+    void loanEvictsOnlyLoanedBookTest(){
+        //cenário -> dois livros no cache
+        Book other = repository.save(Book.builder().title("Outras").author("Ciclano").isbn("456").build());
+        repository.findById(book.getId());
+        repository.findById(other.getId());
+        Cache cache = entityManagerFactory.getCache();
+        assertThat(cache.contains(Book.class, other.getId())).isTrue();
+
+        //execução
+        Loan loan = loanService.save(Loan.builder().book(book).customer("fulano").loanDate(LocalDate.now()).build());
+
+        //verificação -> o emprestado sai (e volta do banco já marcado), o outro continua no cache
+        assertThat(cache.contains(Book.class, book.getId())).isFalse();
+        assertThat(cache.contains(Book.class, other.getId())).isTrue();
+        assertThat(repository.findById(book.getId()).get().getActiveLoanId()).isEqualTo(loan.getId());
+    }
+
+    @Test
+    @DisplayName("deve mostrar hits, misses e hit ratio por região no endpoint")
+    void endpointReportTest(){
+        //execução -> 1 miss e 1 hit na região dos livros
+        repository.findById(book.getId());
+        repository.findById(book.getId());
+
+        //verificação
+        SecondLevelCacheEndpoint.Report report = endpoint.report();
+        assertThat(report.isEnabled()).isTrue();
+        assertThat(report.getRegions())
+                .extracting(SecondLevelCacheEndpoint.RegionReport::getRegion)
+                .contains(Book.CACHE_REGION, Book.ISBN_QUERY_REGION);
+        assertThat(report.getRegions())
+                .filteredOn(region -> region.getRegion().equals(Book.CACHE_REGION))
+                .singleElement()
+                .satisfies(region -> {
+                    assertThat(region.getHits()).isEqualTo(1);
+                    assertThat(region.getMisses()).isEqualTo(1);
+                    assertThat(region.getHitRatio()).isEqualTo(0.5);
+                });
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.libraryapi.service;
 
+import com.example.libraryapi.api.dto.BookDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.repository.BookRepository;
 import com.example.libraryapi.service.impl.BookServiceImpl;
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,10 +14,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -36,11 +40,17 @@ class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    BookSearchIndex searchIndex;
+
+    BookCount bookCount;
+
     // injetando a implementação do service dentro
     // do nosso atributo (que eh a interface que o service vai implementar)
     @BeforeEach
     void setUp(){
-        this.service = new BookServiceImpl( repository );
+        this.searchIndex = new BookSearchIndex( repository );
+        this.bookCount = new BookCount( repository );
+        this.service = new BookServiceImpl( repository, searchIndex, bookCount );
     }
     
     @Test
@@ -51,11 +61,8 @@ class BookServiceTest {
         //criar livro valido
         Book book = createBook();
 
-        // mandando retornar falso que já existe livro com esse isbn - mock
-        Mockito.when(repository.existsByIsbn( Mockito.anyString()) ).thenReturn(false);
-
         // mandando salvar e retornar um livro - mock
-        Mockito.when( repository.save(book) )
+        Mockito.when( repository.saveAndFlush(book) )
                 .thenReturn(Book.builder().id(1L)
                         .isbn("123")
                         .author("fulano")
@@ -69,6 +76,8 @@ class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("123");
         assertThat(savedBook.getTitle()).isEqualTo("titulo");
         assertThat(savedBook.getAuthor()).isEqualTo("fulano");
+        // um único comando -> não consulta o isbn antes de inserir
+        Mockito.verify(repository, Mockito.never()).existsByIsbn( Mockito.anyString() );
     }
 
 
@@ -79,8 +88,10 @@ class BookServiceTest {
 
         //cenario
         Book book = createBook();
-        // quando chamarmos o existsByIsbn retornar true, aí entra na exceção
-        Mockito.when(repository.existsByIsbn( Mockito.anyString()) ).thenReturn(true);
+        // o banco recusa o insert pela constraint única do isbn
+        Mockito.when(repository.saveAndFlush(book))
+                .thenThrow(new DataIntegrityViolationException("duplicated isbn",
+                        new ConstraintViolationException("duplicated isbn", null, "PUBLIC.UK_BOOK_ISBN_INDEX_1")));
 
         //execução
         Throwable exception = Assertions.catchThrowable(() -> service.save(book));
@@ -92,11 +103,28 @@ class BookServiceTest {
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Isbn já cadastrado.");
 
-        // 2 - não chamou o repository.save() nenhuma vez
-        Mockito.verify(repository, Mockito.never()).save(book);
+        // 2 - só tentou salvar uma vez
+        Mockito.verify(repository, Mockito.times(1)).saveAndFlush(book);
 
     }
 
+    @Test
+    @DisplayName("Deve repassar erro de integridade que não seja do isbn")
+    void shouldRethrowOtherIntegrityViolations(){
+
+        //cenario
+        Book book = createBook();
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("other",
+                new ConstraintViolationException("other", null, "PUBLIC.OTHER_CONSTRAINT"));
+        Mockito.when(repository.saveAndFlush(book)).thenThrow(violation);
+
+        //execução
+        Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+        //verificação
+        assertThat(exception).isSameAs(violation);
+    }
+
     @Test
     @DisplayName("Deve obter um livro por id")
     void getByIdTest(){
@@ -107,7 +135,7 @@ class BookServiceTest {
         Book book = createBook();
         book.setId( id );
 
-        Mockito.when( repository.findById( id ) ).thenReturn(Optional.of( book ) );
+        Mockito.when( repository.findByIdWithoutCachePut( id ) ).thenReturn(Optional.of( book ) );
 
         //execução
         Optional<Book> foundBook = service.getById( id );
@@ -129,7 +157,7 @@ class BookServiceTest {
         // cenário
         Long id = 1L;
 
-        Mockito.when( repository.findById( id ) ).thenReturn( Optional.empty() );
+        Mockito.when( repository.findByIdWithoutCachePut( id ) ).thenReturn( Optional.empty() );
 
         //execução
         Optional<Book> book = service.getById( id );
@@ -224,23 +252,26 @@ class BookServiceTest {
 
         //cenário
         Book book = createBook();
+        BookDTO dto = BookDTO.builder().id(1L).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn())
+                .available(true).build();
 
         PageRequest pageRequest = PageRequest.of(0, 10);
 
-        Page<Book> page = new PageImpl<>
-                (Arrays.asList(book), pageRequest, 1);
+        Page<BookDTO> page = new PageImpl<>
+                (Arrays.asList(dto), pageRequest, 1);
 
-        Mockito.when( repository.findAll( Mockito.any(Example.class), Mockito.any(PageRequest.class) ) )
+        // a listagem sai da projeção (sem entidades)
+        Mockito.when( repository.findDtos( Mockito.any(Example.class), Mockito.any(PageRequest.class) ) )
                 .thenReturn( page );
 
 
         //execução
-        Page<Book> result = service.find(book, pageRequest);
+        Page<BookDTO> result = service.find(book, pageRequest);
 
 
         //verificação
         assertThat(  result.getTotalElements()  ).isEqualTo(1);
-        assertThat( result.getContent() ).isEqualTo(Arrays.asList(book));
+        assertThat( result.getContent() ).isEqualTo(Arrays.asList(dto));
         assertThat( result.getPageable().getPageNumber() ).isEqualTo( 0 );
         assertThat( result.getPageable().getPageSize() ).isEqualTo( 10 );
 
@@ -248,6 +279,100 @@ class BookServiceTest {
     }
 
 
+    @Test
+    @DisplayName("deve listar sem filtro com o total do count periodico, sem count por pagina")
+    void findUnfilteredBooksTest(){
+
+        //cenário -> 3 livros no banco na ultima contagem (só 1 no indice desta instancia)
+        searchIndex.put(Book.builder().id(1L).title("titulo 1").author("autor").isbn("isbn-1").build());
+        searchIndex.markReady();
+        Mockito.when( repository.count() ).thenReturn( 3L );
+        bookCount.refresh();
+        BookDTO first = BookDTO.builder().id(1L).title("titulo 1").author("autor").isbn("isbn-1").available(true).build();
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        Mockito.when( repository.findDtoSlice( Mockito.any(Example.class), Mockito.eq(pageRequest) ) )
+                .thenReturn( new SliceImpl<>(Arrays.asList(first), pageRequest, true) );
+
+        //execução
+        Page<BookDTO> result = service.find(new Book(), pageRequest);
+
+        //verificação
+        assertThat( result.getTotalElements() ).isEqualTo(3);
+        assertThat( result.getContent() ).isEqualTo(Arrays.asList(first));
+        verify( repository, Mockito.never() ).findDtos( Mockito.any(Example.class), Mockito.any(PageRequest.class) );
+    }
+
+    @Test
+    @DisplayName("deve ajustar o total da listagem sem filtro a cada cadastro, importação e exclusão")
+    void adjustUnfilteredTotalTest(){
+
+        //cenário -> 3 livros na ultima contagem
+        Mockito.when( repository.count() ).thenReturn( 3L );
+        bookCount.refresh();
+        Book book = createBook();
+        Mockito.when( repository.saveAndFlush(book) ).thenReturn( Book.builder().id(1L).isbn("123").build() );
+        Mockito.when( repository.saveInBatch( Mockito.anyList() ) ).thenAnswer( invocation -> invocation.getArgument(0) );
+
+        //execução e verificação -> sem esperar o próximo count
+        service.save(book);
+        assertThat( bookCount.get() ).isEqualTo(4L);
+
+        service.importBooks(Arrays.asList(
+                Book.builder().id(2L).title("titulo 2").author("autor").isbn("456").build(),
+                Book.builder().id(3L).title("titulo 3").author("autor").isbn("789").build()));
+        assertThat( bookCount.get() ).isEqualTo(6L);
+
+        service.delete(Book.builder().id(1L).build());
+        assertThat( bookCount.get() ).isEqualTo(5L);
+
+        // o count periodico continua corrigindo (ex.: escritas de outra instancia)
+        Mockito.when( repository.count() ).thenReturn( 8L );
+        bookCount.refresh();
+        assertThat( bookCount.get() ).isEqualTo(8L);
+    }
+
+    @Test
+    @DisplayName("deve listar sem filtro com o count do banco antes da primeira contagem")
+    void findUnfilteredBooksBeforeCountTest(){
+
+        //cenário
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<BookDTO> page = new PageImpl<>(Arrays.asList(), pageRequest, 0);
+        Mockito.when( repository.findDtos( Mockito.any(Example.class), Mockito.eq(pageRequest) ) ).thenReturn( page );
+
+        //execução
+        Page<BookDTO> result = service.find(new Book(), pageRequest);
+
+        //verificação
+        assertThat( result ).isSameAs( page );
+        verify( repository, Mockito.never() ).findDtoSlice( Mockito.any(Example.class), Mockito.any(PageRequest.class) );
+    }
+
+    @Test
+    @DisplayName("deve buscar por titulo no indice, do mais relevante para o menos relevante")
+    void findBookBySearchIndexTest(){
+
+        //cenário
+        Book exact = Book.builder().id(1L).title("Duna").author("Frank Herbert").isbn("1").build();
+        Book contains = Book.builder().id(2L).title("O Messias de Duna").author("Frank Herbert").isbn("2").build();
+        Book other = Book.builder().id(3L).title("Fundação").author("Isaac Asimov").isbn("3").build();
+        Arrays.asList(exact, contains, other).forEach(searchIndex::put);
+        searchIndex.markReady();
+
+        BookDTO exactDTO = BookDTO.builder().id(1L).title("Duna").author("Frank Herbert").isbn("1").available(true).build();
+        BookDTO containsDTO = BookDTO.builder().id(2L).title("O Messias de Duna").author("Frank Herbert").isbn("2").available(false).build();
+        Mockito.when( repository.findDtoByIdIn( Arrays.asList(1L, 2L) ) )
+                .thenReturn( Arrays.asList(containsDTO, exactDTO) );
+
+        //execução
+        Page<BookDTO> result = service.find(Book.builder().title("duna").build(), PageRequest.of(0, 10));
+
+        //verificação -> ordem do ranking, não a do banco
+        assertThat( result.getTotalElements() ).isEqualTo(2);
+        assertThat( result.getContent() ).isEqualTo(Arrays.asList(exactDTO, containsDTO));
+        verify( repository, Mockito.never() ).findDtos( Mockito.any(Example.class), Mockito.any(PageRequest.class) );
+    }
+
     @Test
     @DisplayName("deve obter um livro pelo isbn")
     void getBookByIsbnTest(){
@@ -256,7 +381,7 @@ class BookServiceTest {
         String isbn = "123";
 
         //simulando que o repo retornou o livro que existe na base
-        Mockito.when( repository.findByIsbn(isbn) )
+        Mockito.when( repository.findByIsbnWithoutCachePut(isbn) )
                 .thenReturn( Optional.of( Book.builder().id(1L).isbn(isbn).build() ) );
 
 
@@ -268,8 +393,8 @@ class BookServiceTest {
         assertThat(book.isPresent()).isTrue();
         assertThat(book.get().getId()).isEqualTo(1L);
         assertThat(book.get().getIsbn()).isEqualTo( isbn );
-        // verificando que findByIsbn() foi chamado uma vez
-        verify( repository, times(1)).findByIsbn(isbn);
+        // verificando que findByIsbnWithoutCachePut() foi chamado uma vez
+        verify( repository, times(1)).findByIsbnWithoutCachePut(isbn);
     }
 
     private static Book createBook() {
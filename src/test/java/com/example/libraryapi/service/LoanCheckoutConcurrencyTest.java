@@ -0,0 +1,113 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.exception.BusinessException;
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
+import com.example.libraryapi.model.repository.LoanRepository;
+import com.example.libraryapi.service.impl.LoanServiceImpl;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// sem a transação do teste -> cada thread faz commit de verdade e disputa a linha do livro
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(LoanServiceImpl.class)
+@ActiveProfiles("test")
+class LoanCheckoutConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    LoanService service;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @MockBean
+    OverdueLoanTracker overdueLoanTracker;
+
+    @AfterEach
+    void tearDown(){
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("deve emprestar o livro para um só cliente com pedidos simultaneos")
+    void concurrentCheckoutTest() throws Exception {
+        Book book = bookRepository.save(Book.builder().title("Aventuras").author("Fulano").isbn("123").build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Loan>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Loan loan = Loan.builder()
+                    .book(book)
+                    .customer("cliente " + i)
+                    .loanDate(LocalDate.now())
+                    .returned(false)
+                    .build();
+            results.add(executor.submit(() -> {
+                start.await();
+                return service.save(loan);
+            }));
+        }
+
+        start.countDown();
+        List<Loan> winners = new ArrayList<>();
+        int rejected = 0;
+        for (Future<Loan> result : results) {
+            try {
+                winners.add(result.get(30, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(BusinessException.class).hasMessage("Book already loaned.");
+                rejected++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(winners).hasSize(1);
+        assertThat(rejected).isEqualTo(THREADS - 1);
+        // só o insert do vencedor chegou no banco e o livro aponta para ele
+        assertThat(loanRepository.count()).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(saved -> assertThat(saved.getActiveLoanId()).isEqualTo(winners.get(0).getId()));
+    }
+
+    @Test
+    @DisplayName("deve aceitar o reenvio da reabertura de um emprestimo que já está em aberto")
+    void reopenOpenLoanAgainTest(){
+        Book book = bookRepository.save(Book.builder().title("Aventuras").author("Fulano").isbn("123").build());
+        Loan loan = service.save(Loan.builder().book(book).customer("fulano").loanDate(LocalDate.now()).returned(false).build());
+
+        // o cliente repete o PATCH returned=false (timeout, retry)
+        List<Loan> reopened = service.updateReturned(List.of(loan.getId()), false);
+
+        assertThat(reopened).extracting(Loan::getId).containsExactly(loan.getId());
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(saved -> assertThat(saved.getActiveLoanId()).isEqualTo(loan.getId()));
+    }
+}
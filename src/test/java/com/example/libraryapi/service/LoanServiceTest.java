@@ -6,14 +6,17 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.example.libraryapi.api.dto.LoanDTO;
 import com.example.libraryapi.api.dto.LoanFilterDTO;
 import com.example.libraryapi.exception.BusinessException;
 import com.example.libraryapi.model.entity.Book;
 import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.BookRepository;
 import com.example.libraryapi.model.repository.LoanRepository;
 import com.example.libraryapi.service.impl.LoanServiceImpl;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import org.assertj.core.api.AssertionsForClassTypes;
@@ -38,10 +41,14 @@ public class LoanServiceTest {
     private LoanService service;
     @MockBean  //nosso repo ainda não "existe" nesse teste
     private LoanRepository repository;
+    @MockBean
+    private BookRepository bookRepository;
+    @MockBean
+    private OverdueLoanTracker overdueLoanTracker;
 
     @BeforeEach
     void setUp(){
-        this.service = new LoanServiceImpl(repository);
+        this.service = new LoanServiceImpl(repository, bookRepository, overdueLoanTracker);
 
     }
 
@@ -50,7 +57,7 @@ public class LoanServiceTest {
     void saveLoanTest(){
 
         //criando o loan com o livro de id 1 para o customer customer
-        Book book = Book.builder().id(1L).build();
+        Book book = Book.builder().id(1L).isbn("123").build();
         String customer = "fulano";
 
         Loan loanToSave = Loan.builder()
@@ -67,11 +74,10 @@ public class LoanServiceTest {
                 .customer( customer )
                 .build();
 
-        //vou verificar se o livro já existe na base,
-        // e ele retorna falso (nao existe)
-        when( repository.existsByBookAndNotReturned(book) ).thenReturn( false );
         //quando eu mandar o loanToSave, retorne o savedLoan
         when( repository.save( loanToSave ) ).thenReturn( savedLoan );
+        //a reserva do livro (update condicional) encontra o livro livre -> 1 linha
+        when( bookRepository.markActiveLoan(1L, 1L) ).thenReturn( 1 );
 
 
         //execução
@@ -83,6 +89,11 @@ public class LoanServiceTest {
         assertThat( loan.getBook().getId() ).isEqualTo( savedLoan.getBook().getId() );
         assertThat( loan.getCustomer() ).isEqualTo( savedLoan.getCustomer() );
         assertThat( loan.getLoanDate() ).isEqualTo( savedLoan.getLoanDate() );
+        // o livro passa a apontar para o emprestimo em aberto
+        verify( bookRepository ).markActiveLoan(1L, 1L);
+        verify( overdueLoanTracker ).track(savedLoan);
+        // sem transação o AfterCommit roda na hora -> só este livro sai do second-level cache
+        verify( bookRepository ).evictFromCache(Collections.singletonList(1L));
 
     }
 
@@ -101,9 +112,11 @@ public class LoanServiceTest {
                 .loanDate( LocalDate.now() )
                 .build();
 
+        Loan savedLoan = Loan.builder().id(1L).book( book ).customer( customer ).build();
+        when( repository.save( loanToSave ) ).thenReturn( savedLoan );
         // quando eu mandar o "book" que já foi emprestado,
-        // então ele vai retornar que ele já existe na base de emprestimos
-        when( repository.existsByBookAndNotReturned(book) ).thenReturn( true );
+        // então a reserva não atualiza nenhuma linha
+        when( bookRepository.markActiveLoan(1L, 1L) ).thenReturn( 0 );
 
 
         //execução -> vamos capturar o erro
@@ -114,8 +127,8 @@ public class LoanServiceTest {
         assertThat( exception )
                 .isInstanceOf( BusinessException.class )
                 .hasMessage("Book already loaned.");
-        //verificando que nunca chamou orepository.save(loanToSave)
-        verify(repository, never()).save(loanToSave);
+        //o insert pendente eh descartado no rollback e o emprestimo nunca eh acompanhado
+        verify(overdueLoanTracker, never()).track(savedLoan);
     }
 
     @Test
@@ -161,6 +174,28 @@ public class LoanServiceTest {
 
         assertThat(updatedLoan.getReturned()).isTrue(); //garantindo que o getReturned = true -> que ele foi devolvido
         verify(repository).save(loan); //garantindo que chamou o método save
+        verify(bookRepository).clearActiveLoan(loan.getBook().getId(), id); //o livro ficou disponivel
+        verify(overdueLoanTracker).track(loan); //e saiu do acompanhamento de atraso
+    }
+
+    @Test
+    @DisplayName("deve lançar erro ao reabrir emprestimo de livro emprestado para outro")
+    void reopenLoanedBookTest(){
+
+        //cenário
+        Loan loan = createLoan();
+        loan.setId(1L);
+        loan.setReturned(false);
+
+        when( repository.save(loan) ).thenReturn( loan );
+        when( bookRepository.markActiveLoan(1L, 1L) ).thenReturn( 0 );
+
+        //execução
+        Throwable exception = catchThrowable(() -> service.update(loan));
+
+        //verificação -> a exceção desfaz o save (transação) e o emprestimo não volta ao acompanhamento
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book already loaned.");
+        verify(overdueLoanTracker, never()).track(loan);
     }
 
     @Test
@@ -173,13 +208,15 @@ public class LoanServiceTest {
         Loan loan = createLoan();
         loan.setId(1L);
         PageRequest pageRequest = PageRequest.of(0, 10);
-        List<Loan> list = Arrays.asList(loan);
+        List<LoanDTO> list = Arrays.asList(new LoanDTO(1L, loan.getCustomer(), loan.getCustomerEmail(),
+                loan.getLoanDate(), false, 1L, "titulo", "autor", "321", false));
 
-        Page<Loan> page = new PageImpl<>
+        Page<LoanDTO> page = new PageImpl<>
                 (list, pageRequest, list.size());
 
+        // a pagina sai da projeção (select new LoanDTO), sem as entidades
         Mockito.when(
-                repository.findByBookIsbnOrCustomer(
+                repository.findDtoByBookIsbnOrCustomer(
                         Mockito.anyString(),
                         Mockito.anyString(),
                         Mockito.any(PageRequest.class) ) )
@@ -187,7 +224,7 @@ public class LoanServiceTest {
 
 
         //execução
-        Page<Loan> result = service.find( dto, pageRequest );
+        Page<LoanDTO> result = service.find( dto, pageRequest );
 
 
         //verificação
@@ -199,6 +236,62 @@ public class LoanServiceTest {
 
     }
 
+    @Test
+    @DisplayName("deve devolver um lote de emprestimos com um update e liberar os livros")
+    void updateReturnedTest(){
+        //cenário
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = Loan.builder().id(10L).book(book).customer("fulano").loanDate(LocalDate.now()).build();
+
+        List<Long> ids = Arrays.asList(10L, 99L);
+        when( repository.findAllWithBookByIdIn(ids) ).thenReturn( Arrays.asList(loan) );
+
+        //execução
+        List<Loan> updated = service.updateReturned(ids, true);
+
+        //verificação
+        assertThat(updated).containsExactly(loan);
+        assertThat(loan.getReturned()).isTrue();
+        verify( repository ).updateReturned(Arrays.asList(10L), true);
+        verify( bookRepository ).clearActiveLoans(Arrays.asList(1L), Arrays.asList(10L));
+        verify( overdueLoanTracker ).track(loan);
+        verify( bookRepository ).evictFromCache(Arrays.asList(1L));
+    }
+
+    @Test
+    @DisplayName("deve reabrir só os emprestimos cujo livro continua livre")
+    void updateReturnedReopenTest(){
+        //cenário -> o livro 2 já foi emprestado para outro cliente
+        Loan free = Loan.builder().id(10L).book(Book.builder().id(1L).build()).returned(true).build();
+        Loan taken = Loan.builder().id(20L).book(Book.builder().id(2L).build()).returned(true).build();
+
+        List<Long> ids = Arrays.asList(10L, 20L);
+        when( repository.findAllWithBookByIdIn(ids) ).thenReturn( Arrays.asList(free, taken) );
+        when( bookRepository.markActiveLoan(1L, 10L) ).thenReturn( 1 );
+        when( bookRepository.markActiveLoan(2L, 20L) ).thenReturn( 0 );
+
+        //execução
+        List<Loan> updated = service.updateReturned(ids, false);
+
+        //verificação -> o recusado não é reaberto nem volta ao acompanhamento
+        assertThat(updated).containsExactly(free);
+        assertThat(free.getReturned()).isFalse();
+        assertThat(taken.getReturned()).isTrue();
+        verify( repository ).updateReturned(Arrays.asList(10L), false);
+        verify( overdueLoanTracker, never() ).track(taken);
+    }
+
+    @Test
+    @DisplayName("não deve atualizar nada quando nenhum id existir")
+    void updateReturnedNotFoundTest(){
+        when( repository.findAllWithBookByIdIn(Arrays.asList(99L)) ).thenReturn( Arrays.asList() );
+
+        List<Loan> updated = service.updateReturned(Arrays.asList(99L), true);
+
+        assertThat(updated).isEmpty();
+        verify( repository, never() ).updateReturned(Mockito.any(), Mockito.any());
+    }
+
     public static Loan createLoan(){
         Book book = Book.builder().id(1L).build();
         String customer = "fulano";
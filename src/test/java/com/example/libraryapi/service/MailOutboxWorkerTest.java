@@ -0,0 +1,154 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.libraryapi.model.entity.MailOutbox;
+import com.example.libraryapi.model.repository.MailOutboxRepository;
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+import javax.mail.internet.MimeMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// aplicação inteira falando com um smtp embarcado (greenmail) na porta 3025
+// -> o worker não roda sozinho (initial-delay de 1h), o teste chama o drain()
+@SpringBootTest(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.boot.admin.client.enabled=false",
+        "application.mail.outbox.initial-delay=3600000",
+        "application.mail.outbox.max-attempts=2",
+        "application.mail.outbox.backoff=1s"
+})
+@ActiveProfiles("test")
+class MailOutboxWorkerTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    @Autowired
+    EmailService emailService;
+
+    @Autowired
+    MailOutboxWorker worker;
+
+    @Autowired
+    MailOutboxRepository repository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("deve gravar o email no outbox e o worker deve entregar no smtp")
+    void deliverPendingMailTest() throws Exception {
+        //cenário -> o EmailService injetado só grava na tabela
+        emailService.sendMail("fulano@email.com", "Emprestimo atrasado.");
+        MailOutbox pending = repository.findAll().stream()
+                .filter(mail -> mail.getRecipient().equals("fulano@email.com"))
+                .findFirst().orElseThrow();
+        assertThat(pending.getStatus()).isEqualTo(MailOutbox.Status.PENDING);
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+
+        //execução
+        worker.drain();
+
+        //verificação
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        assertThat(received.getAllRecipients()[0].toString()).isEqualTo("fulano@email.com");
+        assertThat(GreenMailUtil.getBody(received)).contains("Emprestimo atrasado.");
+
+        MailOutbox sent = await(pending.getId(), mail -> mail.getStatus() == MailOutbox.Status.SENT);
+        assertThat(sent.getAttempts()).isEqualTo(1);
+        assertThat(sent.getSentAt()).isNotNull();
+        assertThat(meterRegistry.timer("library.mail.outbox.send").count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("deve tentar de novo com espera e mandar para DEAD quando esgotar as tentativas")
+    void retryAndDeadLetterTest() throws Exception {
+        //cenário -> endereço que o smtp nunca aceita
+        double retries = meterRegistry.counter("library.mail.outbox.retries").count();
+        emailService.sendMail("nao eh um email", "Emprestimo atrasado.");
+        Long id = repository.findAll().stream()
+                .filter(mail -> mail.getRecipient().equals("nao eh um email"))
+                .findFirst().orElseThrow().getId();
+
+        //execução -> 1a tentativa falha e fica agendada para depois do backoff
+        worker.drain();
+        MailOutbox retrying = await(id, mail -> mail.getAttempts() == 1);
+
+        //verificação
+        assertThat(retrying.getStatus()).isEqualTo(MailOutbox.Status.PENDING);
+        assertThat(retrying.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(retrying.getLastError()).isNotBlank();
+        assertThat(meterRegistry.counter("library.mail.outbox.retries").count()).isEqualTo(retries + 1);
+
+        //execução -> vencendo o backoff, a 2a (e ultima) tentativa também falha
+        retrying.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(retrying);
+        worker.drain();
+
+        //verificação
+        MailOutbox dead = await(id, mail -> mail.getStatus() == MailOutbox.Status.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.mail.outbox.depth").tag("status", "dead").gauge().value())
+                .isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve reservar o email para um worker só quando dois lerem o mesmo email")
+    void leaseOnceTest() {
+        //cenário -> dois workers leram o mesmo email pendente no findDue
+        emailService.sendMail("ciclano@email.com", "Emprestimo atrasado.");
+        Long id = repository.findAll().stream()
+                .filter(mail -> mail.getRecipient().equals("ciclano@email.com"))
+                .findFirst().orElseThrow().getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        //execução
+        int first = repository.lease(id, MailOutbox.Status.PENDING, now, now.plusMinutes(5));
+        int second = repository.lease(id, MailOutbox.Status.PENDING, now, now.plusMinutes(5));
+
+        //verificação -> só o primeiro envia; o email continua pendente até o envio
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(repository.findById(id).orElseThrow().getStatus()).isEqualTo(MailOutbox.Status.PENDING);
+    }
+
+    @Test
+    @DisplayName("deve dobrar a espera a cada tentativa")
+    void backoffTest() {
+        assertThat(worker.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(worker.backoff(2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(worker.backoff(4)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(worker.backoff(60)).isEqualTo(Duration.ofHours(1));
+    }
+
+    // o envio acontece no pool do worker -> espera o registro chegar no estado esperado
+    private MailOutbox await(Long id, Predicate<MailOutbox> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        MailOutbox mail = repository.findById(id).orElseThrow();
+        while (!condition.test(mail) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            mail = repository.findById(id).orElseThrow();
+        }
+        assertThat(condition.test(mail)).isTrue();
+        return mail;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import com.example.libraryapi.model.repository.LoanRepository;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+class OverdueLoanTrackerTest {
+
+    private OverdueLoanTracker tracker;
+
+    @MockBean
+    private LoanRepository repository;
+    @MockBean
+    private ApplicationEventPublisher publisher;
+
+    @BeforeEach
+    void setUp(){
+        tracker = new OverdueLoanTracker(repository, publisher);
+        ReflectionTestUtils.setField(tracker, "chunkSize", 2);
+    }
+
+    @Test
+    @DisplayName("deve carregar os emprestimos em aberto e publicar o vencimento dos atrasados")
+    void loadAndFireTest(){
+        //cenário -> um já venceu (4 dias atrás) e outro vence daqui a 4 dias
+        Loan late = createLoan(1L, "fulano@email.com", LocalDate.now().minusDays(LoanService.LOAN_DAYS));
+        Loan onTime = createLoan(2L, "ciclano@email.com", LocalDate.now());
+        when(repository.findOpenLoansToNotifyAfter(eq(0L), any())).thenReturn(Arrays.asList(late, onTime));
+
+        //execução
+        tracker.load();
+        tracker.tick(System.currentTimeMillis() + 1000);
+
+        //verificação
+        verify(publisher).publishEvent(overdue(late));
+        verify(publisher, never()).publishEvent(overdue(onTime));
+        assertThat(tracker.size()).isEqualTo(1);
+
+        //execução -> passando do prazo do segundo
+        tracker.tick(System.currentTimeMillis() + Duration.ofDays(LoanService.LOAN_DAYS + 1).toMillis());
+
+        //verificação
+        verify(publisher).publishEvent(overdue(onTime));
+        assertThat(tracker.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve carregar os emprestimos em blocos pelo id até vir um bloco incompleto")
+    void loadInChunksTest(){
+        //cenário -> chunkSize 2: um bloco cheio e depois um com 1
+        Loan first = createLoan(1L, "a@email.com", LocalDate.now());
+        Loan second = createLoan(2L, "b@email.com", LocalDate.now());
+        Loan third = createLoan(3L, "c@email.com", LocalDate.now());
+        when(repository.findOpenLoansToNotifyAfter(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(first, second));
+        when(repository.findOpenLoansToNotifyAfter(2L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(third));
+
+        //execução
+        tracker.load();
+
+        //verificação
+        assertThat(tracker.size()).isEqualTo(3);
+        verify(repository, never()).findOpenLoansToNotifyAfter(eq(3L), any());
+    }
+
+    @Test
+    @DisplayName("deve publicar um evento só para os emprestimos do mesmo cliente que vencem no mesmo tick")
+    void groupByCustomerTest(){
+        //cenário
+        Loan first = createLoan(1L, "fulano@email.com", LocalDate.now().minusDays(10));
+        Loan second = createLoan(2L, "fulano@email.com", LocalDate.now().minusDays(10));
+        Loan other = createLoan(3L, "ciclano@email.com", LocalDate.now().minusDays(10));
+        tracker.track(first);
+        tracker.track(second);
+        tracker.track(other);
+
+        //execução
+        tracker.tick(System.currentTimeMillis() + 1000);
+
+        //verificação
+        verify(publisher).publishEvent(new CustomerLoansOverdueEvent("fulano@email.com",
+                Arrays.asList(LoanOverdueEvent.of(first), LoanOverdueEvent.of(second))));
+        verify(publisher).publishEvent(overdue(other));
+    }
+
+    @Test
+    @DisplayName("deve parar de acompanhar o emprestimo devolvido")
+    void returnedLoanTest(){
+        //cenário
+        Loan loan = createLoan(1L, "fulano@email.com", LocalDate.now().minusDays(10));
+        tracker.track(loan);
+        assertThat(tracker.size()).isEqualTo(1);
+
+        //execução
+        loan.setReturned(true);
+        tracker.track(loan);
+        tracker.tick(System.currentTimeMillis() + 1000);
+
+        //verificação
+        assertThat(tracker.size()).isZero();
+        verify(publisher, never()).publishEvent(any(Object.class));
+    }
+
+    private static CustomerLoansOverdueEvent overdue(Loan loan){
+        return new CustomerLoansOverdueEvent(loan.getCustomerEmail(), Collections.singletonList(LoanOverdueEvent.of(loan)));
+    }
+
+    private static Loan createLoan(Long id, String email, LocalDate loanDate){
+        Book book = Book.builder().id(id).title("Aventuras").isbn("isbn-" + id).build();
+        return Loan.builder().id(id).book(book).customer("fulano").customerEmail(email)
+                .loanDate(loanDate).build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.libraryapi.model.entity.Book;
+import com.example.libraryapi.model.entity.Loan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+class ScheduleServiceTest {
+
+    private ScheduleService service;
+    private SimpleMeterRegistry meterRegistry;
+
+    @MockBean
+    private LoanService loanService;
+    @MockBean
+    private OverdueLoanNotifier notifier;
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ScheduleService(loanService, notifier, Executors.newFixedThreadPool(2), meterRegistry);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        when(notifier.notify(anyList())).thenAnswer(invocation -> invocation.getArgument(0, List.class).size());
+    }
+
+    @Test
+    @DisplayName("deve enviar um email por cliente mesmo quando os emprestimos dele ficam em blocos diferentes")
+    void sendOneMailPerCustomerTest(){
+        //cenário -> o fulano tem um emprestimo no fim do 1o bloco e outro no começo do 2o
+        Loan ciclano = createLateLoan(1L, "ciclano@email.com", "Aventuras");
+        Loan fulano1 = createLateLoan(2L, "fulano@email.com", "Aventuras II");
+        Loan fulano2 = createLateLoan(3L, "fulano@email.com", "Aventuras III");
+
+        when(loanService.getLateLoans("", 0L, 2)).thenReturn(Arrays.asList(ciclano, fulano1));
+        when(loanService.getLateLoans("fulano@email.com", 2L, 2)).thenReturn(Collections.singletonList(fulano2));
+
+        //execução
+        service.SendMailToLateLoans();
+
+        //verificação -> um aviso por cliente, o do fulano com os dois emprestimos
+        ArgumentCaptor<List<LoanOverdueEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(notifier, times(2)).notify(captor.capture());
+        assertThat(captor.getAllValues())
+                .extracting(loans -> loans.stream().map(LoanOverdueEvent::getBookTitle).collect(Collectors.toList()))
+                .containsExactlyInAnyOrder(
+                        Collections.singletonList("Aventuras"),
+                        Arrays.asList("Aventuras II", "Aventuras III"));
+        assertThat(meterRegistry.counter("library.lateloans.loans").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("library.lateloans.mails", "result", "sent").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("library.lateloans.job").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve contar as falhas de envio sem interromper os outros clientes")
+    void countFailedMailsTest(){
+        //cenário
+        Loan ciclano = createLateLoan(1L, "ciclano@email.com", "Aventuras");
+        Loan fulano = createLateLoan(2L, "fulano@email.com", "Aventuras II");
+
+        when(loanService.getLateLoans(anyString(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        when(loanService.getLateLoans("", 0L, 2)).thenReturn(Arrays.asList(ciclano, fulano));
+        doThrow(new CannotCreateTransactionException("database down"))
+                .when(notifier).notify(Collections.singletonList(LoanOverdueEvent.of(ciclano)));
+
+        //execução
+        service.SendMailToLateLoans();
+
+        //verificação
+        verify(notifier).notify(Collections.singletonList(LoanOverdueEvent.of(fulano)));
+        assertThat(meterRegistry.counter("library.lateloans.mails", "result", "sent").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("library.lateloans.mails", "result", "failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve avisar o cliente uma vez só pelos vencimentos do mesmo tick")
+    void notifyOnOverdueEventTest(){
+        //cenário
+        List<LoanOverdueEvent> loans = Arrays.asList(
+                LoanOverdueEvent.of(createLateLoan(1L, "fulano@email.com", "Aventuras")),
+                LoanOverdueEvent.of(createLateLoan(2L, "fulano@email.com", "Mais Aventuras")));
+
+        //execução
+        service.onLoansOverdue(new CustomerLoansOverdueEvent("fulano@email.com", loans));
+
+        //verificação
+        verify(notifier).notify(loans);
+        verify(loanService, never()).getLateLoans(anyString(), anyLong(), anyInt());
+        assertThat(meterRegistry.counter("library.lateloans.mails", "result", "sent").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("library.lateloans.loans").count()).isEqualTo(2);
+    }
+
+    private static Loan createLateLoan(Long id, String email, String title){
+        Book book = Book.builder().id(id).title(title).isbn("isbn-" + id).build();
+        return Loan.builder().id(id).book(book).customer(email).customerEmail(email)
+                .loanDate(LocalDate.now().minusDays(5)).build();
+    }
+}
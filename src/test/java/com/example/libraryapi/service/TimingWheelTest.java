@@ -0,0 +1,76 @@
+package com.example.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // começa num instante alinhado ao dia para as contas ficarem legiveis
+    private static final long START = 20_000 * DAY;
+
+    private final TimingWheel<Long, String> wheel = new TimingWheel<>(START, SECOND, 60, 60, 24, 7);
+
+    @Test
+    @DisplayName("deve disparar cada prazo no primeiro tick depois dele, em qualquer nivel")
+    void fireAtDeadlineTest() {
+        wheel.schedule(1L, "segundos", START + 5 * SECOND);
+        wheel.schedule(2L, "minutos", START + 3 * MINUTE + 30 * SECOND);
+        wheel.schedule(3L, "horas", START + 5 * HOUR + 10 * SECOND);
+        wheel.schedule(4L, "dias", START + 3 * DAY + 2 * HOUR);
+
+        assertThat(wheel.advance(START + 5 * SECOND)).isEmpty();
+        assertThat(wheel.advance(START + 6 * SECOND)).containsExactly("segundos");
+
+        assertThat(wheel.advance(START + 3 * MINUTE + 30 * SECOND)).isEmpty();
+        assertThat(wheel.advance(START + 3 * MINUTE + 31 * SECOND)).containsExactly("minutos");
+
+        assertThat(wheel.advance(START + 5 * HOUR + 10 * SECOND)).isEmpty();
+        assertThat(wheel.advance(START + 5 * HOUR + 11 * SECOND)).containsExactly("horas");
+
+        assertThat(wheel.advance(START + 3 * DAY + 2 * HOUR)).isEmpty();
+        assertThat(wheel.advance(START + 3 * DAY + 2 * HOUR + SECOND)).containsExactly("dias");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve disparar no próximo advance um prazo que já passou")
+    void pastDeadlineTest() {
+        wheel.advance(START + MINUTE);
+
+        wheel.schedule(1L, "atrasado", START);
+
+        assertThat(wheel.advance(START + MINUTE)).containsExactly("atrasado");
+    }
+
+    @Test
+    @DisplayName("deve cancelar e reagendar pela chave")
+    void cancelAndRescheduleTest() {
+        wheel.schedule(1L, "cancelado", START + 2 * HOUR);
+        wheel.schedule(2L, "reagendado", START + 2 * HOUR);
+        wheel.schedule(2L, "reagendado", START + 4 * HOUR);
+
+        assertThat(wheel.cancel(1L)).isTrue();
+        assertThat(wheel.cancel(1L)).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        assertThat(wheel.advance(START + 3 * HOUR)).isEmpty();
+        assertThat(wheel.advance(START + 4 * HOUR + SECOND)).containsExactly("reagendado");
+    }
+
+    @Test
+    @DisplayName("deve guardar prazos além da ultima volta do nivel mais alto")
+    void overflowTest() {
+        // o nivel mais alto cobre 7 dias
+        wheel.schedule(1L, "longe", START + 10 * DAY + 30 * SECOND);
+
+        assertThat(wheel.advance(START + 10 * DAY)).isEmpty();
+        assertThat(wheel.advance(START + 10 * DAY + 31 * SECOND)).containsExactly("longe");
+    }
+}
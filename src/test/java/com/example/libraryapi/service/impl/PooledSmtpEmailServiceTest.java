@@ -0,0 +1,103 @@
+package com.example.libraryapi.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import java.util.Arrays;
+import javax.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+class PooledSmtpEmailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private PooledSmtpEmailService service;
+
+    @BeforeEach
+    void setUp(){
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+
+        service = new PooledSmtpEmailService(mailSender, "mail@library-api.com", 2);
+    }
+
+    @AfterEach
+    void tearDown(){
+        service.close();
+    }
+
+    @Test
+    @DisplayName("deve mandar uma mensagem por destinatário reaproveitando a mesma conexão")
+    void reuseConnectionTest() throws Exception {
+        //execução
+        service.sendMails("Emprestimo atrasado.", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+        service.sendMail("d@email.com", "Emprestimo atrasado.");
+
+        //verificação
+        assertThat(greenMail.waitForIncomingEmail(5000, 4)).isTrue();
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(4);
+        assertThat(received[0].getAllRecipients()).hasSize(1);
+        assertThat(received[0].getSubject()).isEqualTo(EmailServiceImpl.SUBJECT);
+        assertThat(GreenMailUtil.getBody(received[0])).contains("Emprestimo atrasado.");
+        assertThat(service.connectionsOpened()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve reabrir a conexão quando o servidor derrubar a anterior")
+    void reconnectTest() {
+        //cenário -> uma conexão aberta e o servidor reiniciado
+        service.sendMail("a@email.com", "primeira");
+        greenMail.reset();
+
+        //execução
+        service.sendMail("b@email.com", "segunda");
+
+        //verificação
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        assertThat(GreenMailUtil.getBody(greenMail.getReceivedMessages()[0])).contains("segunda");
+        assertThat(service.connectionsOpened()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("deve recusar endereço inválido sem prender a conexão do pool")
+    void invalidAddressTest() {
+        //execução -> 3 falhas seguidas com pool de 2 (se a vaga não voltasse, travaria)
+        for (int i = 0; i < 3; i++) {
+            Throwable exception = catchThrowable(() -> service.sendMail("nao eh um email", "texto"));
+            assertThat(exception).isInstanceOf(MailSendException.class);
+            assertThat(((MailSendException) exception).getFailedMessages().get("nao eh um email"))
+                    .isInstanceOf(MailParseException.class);
+        }
+        service.sendMail("a@email.com", "texto");
+
+        //verificação
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+    }
+
+    @Test
+    @DisplayName("deve continuar os envios e manter a conexão quando um destinatário for recusado")
+    void recipientFailureTest() {
+        //execução
+        Throwable exception = catchThrowable(() -> service.sendMails("Emprestimo atrasado.",
+                Arrays.asList("a@email.com", "nao eh um email", "c@email.com")));
+
+        //verificação -> os outros dois chegaram, pela mesma conexão, e só o inválido foi reportado
+        assertThat(greenMail.waitForIncomingEmail(5000, 2)).isTrue();
+        assertThat(exception).isInstanceOf(MailSendException.class);
+        assertThat(((MailSendException) exception).getFailedMessages()).containsOnlyKeys("nao eh um email");
+        assertThat(service.connectionsOpened()).isEqualTo(1);
+    }
+}
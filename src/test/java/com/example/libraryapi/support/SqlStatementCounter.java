@@ -0,0 +1,48 @@
+package com.example.libraryapi.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// conta os comandos sql que o hibernate manda para o banco
+// para usar num teste:
+// @DataJpaTest(properties = SqlStatementCounter.PROPERTY)
+// SqlStatementCounter.reset(); ... SqlStatementCounter.assertAtMost(2);
+public class SqlStatementCounter implements StatementInspector {
+
+    public static final String PROPERTY =
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                    + "com.example.libraryapi.support.SqlStatementCounter";
+
+    private static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+    }
+
+    public static int count() {
+        return STATEMENTS.size();
+    }
+
+    public static List<String> statements() {
+        synchronized (STATEMENTS) {
+            return new ArrayList<>(STATEMENTS);
+        }
+    }
+
+    // falha mostrando os comandos executados -> facilita achar o N+1
+    public static void assertAtMost(int max) {
+        List<String> executed = statements();
+        if (executed.size() > max) {
+            throw new AssertionError("expected at most " + max + " sql statements but "
+                    + executed.size() + " were executed:\n" + String.join("\n", executed));
+        }
+    }
+}